@@ -0,0 +1,118 @@
+package com.example.imageai.benchmark;
+
+import com.example.imageai.audio.AudioStore;
+import com.example.imageai.audio.InMemoryAudioStore;
+import com.example.imageai.audio.MappedAudioStore;
+import com.example.imageai.audio.StoredAudio;
+import com.example.imageai.audio.WavUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * REFERENCE模式的语音存储：写入一条2秒的16kHz WAV，以及按ID读取并输出
+ * 配合 -prof gc 对比两种存储每次操作在Java堆上的分配
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AudioStoreBenchmark {
+
+    /**
+     * 预先写入的语音条数
+     */
+    private static final int CLIPS = 1000;
+
+    @Param({"memory", "mapped"})
+    private String type;
+
+    private Path dir;
+
+    private AudioStore store;
+
+    private byte[] clip;
+
+    private String[] ids;
+
+    private long sequence;
+
+    private int next;
+
+    private final byte[] sink = new byte[8192];
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        clip = WavUtils.silence(16000, 2);
+        long maxBytes = 256L << 20;
+        if (type.equals("memory")) {
+            store = new InMemoryAudioStore(maxBytes, Duration.ofHours(1));
+        } else {
+            dir = Files.createTempDirectory("audio-store-benchmark");
+            store = new MappedAudioStore(dir.toString(), 64 << 20, maxBytes, Duration.ofHours(1), 0.5);
+        }
+        ids = new String[CLIPS];
+        for (int i = 0; i < CLIPS; i++) {
+            ids[i] = store.put(distinct(), "wav");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (store instanceof MappedAudioStore mapped) {
+            mapped.close();
+            FileSystemUtils.deleteRecursively(dir);
+        }
+    }
+
+    /**
+     * 写入一条新语音（内容各不相同，不会按内容哈希去重）
+     */
+    @Benchmark
+    public String put() {
+        return store.put(distinct(), "wav");
+    }
+
+    /**
+     * 按ID读取并把内容复制到输出缓冲区，相当于不走sendfile时的接口输出
+     */
+    @Benchmark
+    public long serve() throws IOException {
+        StoredAudio audio = store.get(ids[next++ % CLIPS]).orElseThrow();
+        long total = 0;
+        try (InputStream in = audio.content().getInputStream()) {
+            int n;
+            while ((n = in.read(sink)) > 0) {
+                total += n;
+            }
+        }
+        return total;
+    }
+
+    private byte[] distinct() {
+        byte[] data = clip.clone();
+        ByteBuffer.wrap(data).putLong(data.length - 8, sequence++);
+        return data;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.imageai.benchmark;
+
+import com.example.imageai.audio.AudioSniffer;
+import com.example.imageai.audio.WavUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TTS响应校验：原来的实现（整段转String再解析JSON）与只看文件头的AudioSniffer对比
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AudioValidationBenchmark {
+
+    /**
+     * wav: 约2秒的16kHz语音；error: TTS返回的JSON错误
+     */
+    @Param({"wav", "error"})
+    private String response;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private byte[] data;
+
+    @Setup
+    public void setUp() {
+        int dataSize = 64000;
+        byte[] wav = new byte[WavUtils.HEADER_SIZE + dataSize];
+        System.arraycopy(WavUtils.header(16000, 1, 16, dataSize), 0, wav, 0, WavUtils.HEADER_SIZE);
+        data = "wav".equals(response)
+                ? wav
+                : "{\"status\":40000001,\"message\":\"Gateway:ACCESS_DENIED:The token is invalid!\"}"
+                        .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public boolean legacy() {
+        if (data[0] == '{') {
+            try {
+                JsonNode node = objectMapper.readTree(new String(data));
+                if (node.has("message") || node.has("error")) {
+                    return false;
+                }
+            } catch (Exception ignored) {
+                // 当作音频
+            }
+        }
+        return data[0] == 'R' && data[1] == 'I' && data[2] == 'F' && data[3] == 'F';
+    }
+
+    @Benchmark
+    public boolean sniffer() {
+        if (AudioSniffer.format(data) == null && AudioSniffer.looksLikeJson(data)) {
+            try {
+                JsonNode node = objectMapper.readTree(data);
+                if (node.has("message") || node.has("error")) {
+                    return false;
+                }
+            } catch (Exception ignored) {
+                // 当作音频
+            }
+        }
+        return AudioSniffer.isAudio(data);
+    }
+}
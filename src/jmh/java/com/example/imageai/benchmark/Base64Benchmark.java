@@ -0,0 +1,123 @@
+package com.example.imageai.benchmark;
+
+import com.example.imageai.util.StreamingJsonBody;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base64编码：语音整段编码为字符串（INLINE响应），图片逐块编码进请求体（通义千问请求）
+ * 图片请求体同时保留改为流式之前的写法（legacyRequestBody）作为对照，比较 -prof gc 的 gc.alloc.rate.norm
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Base64Benchmark {
+
+    @Param({"64", "512", "1024", "2048", "5120", "10240"})
+    private int sizeKb;
+
+    /**
+     * 与WebClient（reactor-netty）写请求体时相同的池化缓冲区
+     */
+    private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+    /**
+     * WebClient bodyValue(Map) 使用的编码器
+     */
+    private final Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(new ObjectMapper());
+
+    private final ResolvableType mapType = ResolvableType.forClass(Map.class);
+
+    private byte[] data;
+
+    private StreamingJsonBody body;
+
+    @Setup
+    public void setUp() {
+        data = new byte[sizeKb * 1024];
+        new Random(42).nextBytes(data);
+        String envelope = "{\"model\":\"qwen-vl-plus\",\"messages\":[{\"role\":\"user\",\"content\":[{\"type\":\"image_url\","
+                + "\"image_url\":{\"url\":\"data:image/jpeg;base64," + StreamingJsonBody.PLACEHOLDER + "\"}}]}]}";
+        body = new StreamingJsonBody(envelope.getBytes(StandardCharsets.UTF_8), data);
+    }
+
+    /**
+     * 一次编码为完整的Base64字符串，作为对照
+     */
+    @Benchmark
+    public String encodeToString() {
+        return Base64.getEncoder().encodeToString(data);
+    }
+
+    /**
+     * 图片：StreamingJsonBody逐块编码，每块写出后即释放
+     */
+    @Benchmark
+    public Long streamingBody() {
+        return body.write(bufferFactory)
+                .map(buffer -> {
+                    int size = buffer.readableByteCount();
+                    DataBufferUtils.release(buffer);
+                    return (long) size;
+                })
+                .reduce(0L, Long::sum)
+                .block();
+    }
+
+    /**
+     * 图片：改为流式之前的写法，整张图片编码为Base64字符串放入Map.of请求体，再由Jackson编码器序列化
+     * 一次请求在堆上同时持有Base64字符串、拼接后的data URL和序列化结果
+     */
+    @Benchmark
+    public Long legacyRequestBody() {
+        String base64Image = Base64.getEncoder().encodeToString(data);
+        Map<String, Object> requestBody = Map.of(
+                "model", "qwen-vl-plus",
+                "input", Map.of(
+                        "messages", List.of(
+                                Map.of(
+                                        "role", "user",
+                                        "content", List.of(
+                                                Map.of("image", "data:image/jpeg;base64," + base64Image),
+                                                Map.of("text", "请详细描述这张图片的内容，包括主要物体、场景、颜色、动作等细节,200字左右。")
+                                        )
+                                )
+                        )
+                ),
+                "parameters", Map.of(
+                        "result_format", "message"
+                )
+        );
+        DataBuffer buffer = encoder.encodeValue(requestBody, bufferFactory, mapType, MediaType.APPLICATION_JSON, null);
+        int size = buffer.readableByteCount();
+        DataBufferUtils.release(buffer);
+        return (long) size;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.imageai.benchmark;
+
+import com.example.imageai.service.ChatCompletionParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通义千问响应解析（objectMapper.readTree）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChatCompletionParsingBenchmark {
+
+    /**
+     * 模型输出的句子数，约45字一句
+     */
+    @Param({"2", "20"})
+    private int sentences;
+
+    private String response;
+
+    private String delta;
+
+    @Setup
+    public void setUp() {
+        String sentence = "一只橘猫趴在窗台上晒太阳，阳光把它的毛照得金黄。它眯着眼睛，尾巴轻轻摆动，看起来非常惬意。";
+        String content = sentence.repeat(sentences);
+        response = "{\"id\":\"chatcmpl-0d7f1c2e\",\"object\":\"chat.completion\",\"created\":1718000000,"
+                + "\"model\":\"qwen-vl-plus\",\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\","
+                + "\"content\":\"" + content + "\"},\"finish_reason\":\"stop\"}],"
+                + "\"usage\":{\"prompt_tokens\":1245,\"completion_tokens\":" + content.length()
+                + ",\"total_tokens\":" + (1245 + content.length()) + "}}";
+        delta = "{\"id\":\"chatcmpl-0d7f1c2e\",\"object\":\"chat.completion.chunk\",\"created\":1718000000,"
+                + "\"model\":\"qwen-vl-plus\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"" + sentence
+                + "\"},\"finish_reason\":null}]}";
+    }
+
+    /**
+     * 完整响应
+     */
+    @Benchmark
+    public String parse() {
+        return ChatCompletionParser.parse(response);
+    }
+
+    /**
+     * 流式响应的一个增量片段（与句子数无关）
+     */
+    @Benchmark
+    public String parseDelta() {
+        return ChatCompletionParser.parseDelta(delta);
+    }
+}
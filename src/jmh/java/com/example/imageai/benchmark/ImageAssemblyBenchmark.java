@@ -0,0 +1,108 @@
+package com.example.imageai.benchmark;
+
+import com.example.imageai.image.DownloadedImage;
+import com.example.imageai.image.ImageBodyReader;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ImageDownloadService把下载的数据块组装为图片
+ * 数据块来自池化缓冲区，与reactor-netty读取响应时相同；写入数据块的复制也计入结果。
+ * 组装出的图片直接使用组合缓冲区，用完即释放。
+ * collectListBaseline为改为流式组装之前的写法，作为对照
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageAssemblyBenchmark {
+
+    private static final int MAX_BYTES = 10 * 1024 * 1024;
+
+    @Param({"256", "4096"})
+    private int imageKb;
+
+    /**
+     * 每个数据块的大小（KB）
+     */
+    @Param({"16"})
+    private int chunkKb;
+
+    private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+    private byte[] image;
+
+    @Setup
+    public void setUp() {
+        image = new byte[imageKb * 1024];
+        new Random(42).nextBytes(image);
+        // JPEG文件头
+        image[0] = (byte) 0xFF;
+        image[1] = (byte) 0xD8;
+        image[2] = (byte) 0xFF;
+    }
+
+    @Benchmark
+    public int join() {
+        try (DownloadedImage downloaded = ImageBodyReader.read(body(), MAX_BYTES).block()) {
+            return downloaded.size();
+        }
+    }
+
+    /**
+     * 改为流式之前的写法：collectList收齐全部数据块，逐块复制到数组再写入ByteArrayOutputStream，
+     * 最后toByteArray再复制一次整张图片
+     */
+    @Benchmark
+    public int collectListBaseline() {
+        byte[] bytes = body()
+                .collectList()
+                .map(dataBuffers -> {
+                    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                    dataBuffers.forEach(dataBuffer -> {
+                        byte[] chunk = new byte[dataBuffer.readableByteCount()];
+                        dataBuffer.read(chunk);
+                        DataBufferUtils.release(dataBuffer);
+                        outputStream.write(chunk, 0, chunk.length);
+                    });
+                    return outputStream.toByteArray();
+                })
+                .block();
+        return bytes.length;
+    }
+
+    /**
+     * 按chunkKb切分的响应体，每个数据块是一个新分配的池化缓冲区
+     */
+    private Flux<DataBuffer> body() {
+        int chunkSize = chunkKb * 1024;
+        int chunks = (image.length + chunkSize - 1) / chunkSize;
+        return Flux.range(0, chunks).map(i -> {
+            int offset = i * chunkSize;
+            int length = Math.min(chunkSize, image.length - offset);
+            DataBuffer buffer = bufferFactory.allocateBuffer(length);
+            buffer.write(image, offset, length);
+            return buffer;
+        });
+    }
+}
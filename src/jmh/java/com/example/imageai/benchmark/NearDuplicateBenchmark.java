@@ -0,0 +1,123 @@
+package com.example.imageai.benchmark;
+
+import com.example.imageai.cache.NearDuplicateIndex;
+import com.example.imageai.image.PerceptualHash;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 近似重复图片查找：多索引哈希与逐个比较汉明距离对比，以及计算感知哈希的开销
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NearDuplicateBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Index {
+
+        @Param({"10000", "100000"})
+        private int entries;
+
+        private NearDuplicateIndex index;
+
+        private long[] hashes;
+
+        private long[] queries;
+
+        private int next;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(42);
+            index = new NearDuplicateIndex(true, 6, entries);
+            hashes = new long[entries];
+            for (int i = 0; i < entries; i++) {
+                hashes[i] = random.nextLong();
+                index.add(hashes[i], Integer.toString(i));
+            }
+            // 一半查询与已有图片相差几位，一半是新图片
+            queries = new long[1024];
+            for (int i = 0; i < queries.length; i++) {
+                long query = random.nextBoolean() ? hashes[random.nextInt(entries)] : random.nextLong();
+                for (int flip = random.nextInt(7); flip > 0; flip--) {
+                    query ^= 1L << random.nextInt(64);
+                }
+                queries[i] = query;
+            }
+        }
+
+        long nextQuery() {
+            next = (next + 1) & (queries.length - 1);
+            return queries[next];
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Image {
+
+        private byte[] jpeg;
+
+        @Setup
+        public void setUp() throws IOException {
+            BufferedImage image = new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB);
+            Random random = new Random(42);
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    image.setRGB(x, y, ((x * 255 / 1600) << 16) | ((y * 255 / 1200) << 8) | random.nextInt(64));
+                }
+            }
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ImageIO.write(image, "jpg", output);
+            jpeg = output.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public NearDuplicateIndex.Match multiIndex(Index state) {
+        return state.index.find(state.nextQuery());
+    }
+
+    @Benchmark
+    public int linearScan(Index state) {
+        long query = state.nextQuery();
+        int best = -1;
+        int bestDistance = 7;
+        long[] hashes = state.hashes;
+        for (int i = 0; i < hashes.length; i++) {
+            int distance = Long.bitCount(query ^ hashes[i]);
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 1600x1200的JPEG
+     */
+    @Benchmark
+    public OptionalLong dHash(Image image) {
+        return PerceptualHash.dHash(image.jpeg);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.imageai.benchmark;
+
+import com.example.imageai.dto.ImageAnalysisResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * INLINE模式响应的JSON序列化，audioData为语音字节数组，序列化时按块编码为Base64写入输出
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseSerializationBenchmark {
+
+    /**
+     * 语音大小（KB），64KB约2秒的16kHz wav，1024KB约30秒
+     */
+    @Param({"64", "1024"})
+    private int audioKb;
+
+    /**
+     * 与Spring MVC消息转换器使用相同配置的ObjectMapper
+     */
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private byte[] audio;
+
+    private ImageAnalysisResponse response;
+
+    @Setup
+    public void setUp() {
+        audio = new byte[audioKb * 1024];
+        new Random(42).nextBytes(audio);
+        response = response(audio);
+    }
+
+    /**
+     * 序列化为字节数组
+     */
+    @Benchmark
+    public byte[] writeValueAsBytes() throws IOException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    /**
+     * 直接写入输出流，与消息转换器写响应的方式相同
+     */
+    @Benchmark
+    public void writeToStream() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), response);
+    }
+
+    /**
+     * 完整的INLINE路径：构建响应后写入输出流
+     */
+    @Benchmark
+    public void encodeAndWrite() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), response(audio));
+    }
+
+    private ImageAnalysisResponse response(byte[] audioData) {
+        return ImageAnalysisResponse.builder()
+                .success(true)
+                .description("一只橘猫趴在窗台上晒太阳，阳光把它的毛照得金黄。它眯着眼睛，尾巴轻轻摆动，看起来非常惬意。")
+                .audioData(audioData)
+                .audioSize(audioKb * 1024L)
+                .audioFormat("wav")
+                .build();
+    }
+}
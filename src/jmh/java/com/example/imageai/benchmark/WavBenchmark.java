@@ -0,0 +1,62 @@
+package com.example.imageai.benchmark;
+
+import com.example.imageai.audio.WavUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WAV生成与拼接：TTS降级时的模拟音频，以及长文本分段合成后的拼接
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WavBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Parts {
+
+        /**
+         * 分段数，每段约1秒的16kHz语音
+         */
+        @Param({"4", "16"})
+        private int chunks;
+
+        private List<byte[]> wavs;
+
+        @Setup
+        public void setUp() {
+            wavs = new ArrayList<>(chunks);
+            for (int i = 0; i < chunks; i++) {
+                wavs.add(WavUtils.silence(16000, 1));
+            }
+        }
+    }
+
+    /**
+     * AliTtsService.generateMockAudio：2秒静音
+     */
+    @Benchmark
+    public byte[] mockAudio() {
+        return WavUtils.silence(16000, 2);
+    }
+
+    @Benchmark
+    public byte[] concat(Parts parts) {
+        return WavUtils.concat(parts.wavs);
+    }
+}
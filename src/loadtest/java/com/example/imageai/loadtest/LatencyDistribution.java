@@ -0,0 +1,81 @@
+package com.example.imageai.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 模拟上游的延迟分布（毫秒）
+ * <ul>
+ *     <li>fixed:200 —— 固定200ms</li>
+ *     <li>uniform:100-300 —— 100到300ms均匀分布</li>
+ *     <li>lognormal:800:3000 —— 对数正态分布，中位数800ms，p99为3000ms，接近真实模型服务的长尾</li>
+ * </ul>
+ */
+final class LatencyDistribution {
+
+    /**
+     * 标准正态分布的99分位点
+     */
+    private static final double Z_99 = 2.3263;
+
+    private final String spec;
+
+    private final double min;
+
+    private final double max;
+
+    private final double mu;
+
+    private final double sigma;
+
+    private final boolean lognormal;
+
+    private LatencyDistribution(String spec, double min, double max, double mu, double sigma, boolean lognormal) {
+        this.spec = spec;
+        this.min = min;
+        this.max = max;
+        this.mu = mu;
+        this.sigma = sigma;
+        this.lognormal = lognormal;
+    }
+
+    static LatencyDistribution parse(String spec) {
+        String[] parts = spec.split(":");
+        switch (parts[0]) {
+            case "fixed" -> {
+                double value = Double.parseDouble(parts[1]);
+                return new LatencyDistribution(spec, value, value, 0, 0, false);
+            }
+            case "uniform" -> {
+                String[] range = parts[1].split("-");
+                return new LatencyDistribution(spec, Double.parseDouble(range[0]), Double.parseDouble(range[1]),
+                        0, 0, false);
+            }
+            case "lognormal" -> {
+                double median = Double.parseDouble(parts[1]);
+                double p99 = Double.parseDouble(parts[2]);
+                if (p99 < median) {
+                    throw new IllegalArgumentException("p99不能小于中位数: " + spec);
+                }
+                return new LatencyDistribution(spec, 0, 0, Math.log(median), Math.log(p99 / median) / Z_99, true);
+            }
+            default -> throw new IllegalArgumentException("不支持的延迟分布: " + spec);
+        }
+    }
+
+    /**
+     * 抽取一次延迟
+     * @return 毫秒
+     */
+    long sample() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (lognormal) {
+            return Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+        }
+        return Math.round(min == max ? min : random.nextDouble(min, max));
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
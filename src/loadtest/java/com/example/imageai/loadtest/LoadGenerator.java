@@ -0,0 +1,363 @@
+package com.example.imageai.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 闭环压测：固定数量的并发客户端各自循环发送请求，上一个请求完成后立即发送下一个
+ * 预热阶段的结果不计入统计；压测期间每秒从被测服务的actuator采样一次堆内存
+ */
+final class LoadGenerator {
+
+    private static final byte[] DISCARD = new byte[8192];
+
+    /**
+     * 连接失败、超时等IO错误时记录的状态
+     */
+    private static final int IO_ERROR = -1;
+
+    /**
+     * 流式接口返回error事件时记录的状态
+     */
+    private static final int EVENT_ERROR = -2;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final String target;
+
+    private final String path;
+
+    private final int concurrency;
+
+    private final Duration duration;
+
+    private final Duration warmup;
+
+    private final Duration requestTimeout;
+
+    private final String imageBaseUrl;
+
+    private final int distinctImages;
+
+    private final String responseMode;
+
+    private final String audioFormat;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * 图片URL中带上每次压测的编号，被测服务不重启时也不会命中上一次压测留下的缓存
+     */
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * 可用参数（括号内为默认值）：
+     * <ul>
+     *     <li>--target (http://localhost:8080)：被测服务地址</li>
+     *     <li>--path (/api/v1/image/analyze)：也可以是 /api/v1/image/analyze/stream</li>
+     *     <li>--concurrency (32)、--duration (60s)、--warmup (10s)、--request-timeout (120s)</li>
+     *     <li>--image-base-url：图片地址前缀，默认为模拟上游的 /images/</li>
+     *     <li>--distinct-images (0)：不同图片URL的数量，0表示每个请求都不同（不命中缓存）</li>
+     *     <li>--response-mode (inline)、--audio-format (wav)</li>
+     * </ul>
+     */
+    LoadGenerator(Options options, String defaultImageBaseUrl) {
+        this.target = options.get("target", "http://localhost:8080");
+        this.path = options.get("path", "/api/v1/image/analyze");
+        this.concurrency = options.getInt("concurrency", 32);
+        this.duration = options.getDuration("duration", Duration.ofSeconds(60));
+        this.warmup = options.getDuration("warmup", Duration.ofSeconds(10));
+        this.requestTimeout = options.getDuration("request-timeout", Duration.ofSeconds(120));
+        this.imageBaseUrl = options.get("image-base-url", defaultImageBaseUrl);
+        this.distinctImages = options.getInt("distinct-images", 0);
+        this.responseMode = options.get("response-mode", "inline");
+        this.audioFormat = options.get("audio-format", "wav");
+    }
+
+    void run() throws Exception {
+        System.out.printf("压测 %s%s，并发 %d，预热 %ds，持续 %ds%n",
+                target, path, concurrency, warmup.toSeconds(), duration.toSeconds());
+
+        long start = System.nanoTime();
+        long measureStart = start + warmup.toNanos();
+        long end = measureStart + duration.toNanos();
+
+        HeapSampler heapSampler = new HeapSampler();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "heap-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(() -> {
+            if (System.nanoTime() >= measureStart) {
+                heapSampler.sample();
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+
+        List<Samples> results = new ArrayList<>();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Samples>> futures = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                futures.add(workers.submit(() -> work(measureStart, end)));
+            }
+            long gcBefore = Long.MIN_VALUE;
+            double gcTimeBefore = 0;
+            Thread.sleep(Math.max(0, TimeUnit.NANOSECONDS.toMillis(measureStart - System.nanoTime())));
+            double[] gc = gcPauses();
+            if (gc != null) {
+                gcBefore = (long) gc[0];
+                gcTimeBefore = gc[1];
+            }
+            for (Future<Samples> future : futures) {
+                results.add(future.get());
+            }
+            sampler.shutdownNow();
+            heapSampler.sample();
+            report(results, heapSampler, gcBefore, gcTimeBefore);
+        }
+    }
+
+    private Samples work(long measureStart, long end) {
+        Samples samples = new Samples();
+        while (System.nanoTime() < end) {
+            long begin = System.nanoTime();
+            int status;
+            long firstByte;
+            try {
+                HttpResponse<InputStream> response = httpClient.send(request(), HttpResponse.BodyHandlers.ofInputStream());
+                status = response.statusCode();
+                boolean eventStream = response.headers().firstValue("Content-Type")
+                        .filter(type -> type.startsWith("text/event-stream")).isPresent();
+                try (InputStream body = response.body()) {
+                    body.read();
+                    firstByte = System.nanoTime() - begin;
+                    if (eventStream) {
+                        // 流式接口出错时状态码仍为200，以error事件结束
+                        if (readEvents(body)) {
+                            status = EVENT_ERROR;
+                        }
+                    } else {
+                        while (body.read(DISCARD) >= 0) {
+                            // 读完响应体
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                status = IO_ERROR;
+                firstByte = System.nanoTime() - begin;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            long elapsed = System.nanoTime() - begin;
+            if (begin >= measureStart) {
+                samples.add(status, elapsed, firstByte);
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * 读完SSE响应体
+     * @return 是否收到error事件
+     */
+    private static boolean readEvents(InputStream body) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        boolean error = false;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("event:") && "error".equals(line.substring(6).trim())) {
+                error = true;
+            }
+        }
+        return error;
+    }
+
+    private HttpRequest request() {
+        long n = sequence.getAndIncrement();
+        long image = distinctImages > 0 ? n % distinctImages : n;
+        String body = "{\"imageUrl\":\"" + imageBaseUrl + runId + "-" + image + ".jpg\",\"responseMode\":\"" + responseMode
+                + "\",\"audioFormat\":\"" + audioFormat + "\"}";
+        return HttpRequest.newBuilder(URI.create(target + path))
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private void report(List<Samples> results, HeapSampler heapSampler, long gcBefore, double gcTimeBefore) {
+        Samples all = new Samples();
+        results.forEach(all::addAll);
+        long[] latencies = all.sorted(all.latencies);
+        long[] firstBytes = all.sorted(all.firstBytes);
+        int success = 0;
+        Map<String, Integer> failures = new TreeMap<>();
+        for (int i = 0; i < all.size; i++) {
+            int status = all.statuses[i];
+            if (status >= 200 && status < 300) {
+                success++;
+            } else {
+                failures.merge(switch (status) {
+                    case IO_ERROR -> "IO错误";
+                    case EVENT_ERROR -> "error事件";
+                    default -> String.valueOf(status);
+                }, 1, Integer::sum);
+            }
+        }
+
+        System.out.println();
+        System.out.println("================ 压测结果 ================");
+        System.out.printf("请求数:     %d（成功 %d，失败 %d %s）%n", all.size, success, all.size - success,
+                failures.isEmpty() ? "" : failures);
+        System.out.printf("吞吐量:     %.1f 请求/秒（成功 %.1f）%n",
+                all.size / (double) duration.toSeconds(), success / (double) duration.toSeconds());
+        System.out.printf("延迟(ms):   p50=%d  p90=%d  p99=%d  max=%d%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+                percentile(latencies, 1.0));
+        System.out.printf("首字节(ms): p50=%d  p99=%d%n", percentile(firstBytes, 0.50), percentile(firstBytes, 0.99));
+        if (heapSampler.count > 0) {
+            System.out.printf("堆内存(MB): 峰值=%.1f  平均=%.1f  结束时=%.1f%n", heapSampler.max / 1048576.0,
+                    heapSampler.sum / heapSampler.count / 1048576.0, heapSampler.last / 1048576.0);
+        } else {
+            System.out.println("堆内存:     无法从 " + target + "/actuator/metrics 获取");
+        }
+        double[] gc = gcPauses();
+        if (gc != null && gcBefore != Long.MIN_VALUE) {
+            System.out.printf("GC暂停:     %d 次，共 %.0f ms%n", (long) gc[0] - gcBefore, (gc[1] - gcTimeBefore) * 1000);
+        }
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, index)]);
+    }
+
+    /**
+     * 被测服务累计的GC暂停次数和总时长（秒），获取失败时返回null
+     */
+    private double[] gcPauses() {
+        JsonNode metric = metric("jvm.gc.pause");
+        if (metric == null) {
+            return null;
+        }
+        double count = 0;
+        double totalTime = 0;
+        for (JsonNode measurement : metric.path("measurements")) {
+            switch (measurement.path("statistic").asText()) {
+                case "COUNT" -> count = measurement.path("value").asDouble();
+                case "TOTAL_TIME" -> totalTime = measurement.path("value").asDouble();
+                default -> {
+                }
+            }
+        }
+        return new double[]{count, totalTime};
+    }
+
+    private JsonNode metric(String name) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(target + "/actuator/metrics/" + name))
+                    .timeout(Duration.ofSeconds(5))
+                    .build();
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            return response.statusCode() == 200 ? objectMapper.readTree(response.body()) : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * 被测服务的堆内存使用量
+     */
+    private final class HeapSampler {
+
+        private double max;
+
+        private double sum;
+
+        private double last;
+
+        private int count;
+
+        synchronized void sample() {
+            JsonNode metric = metric("jvm.memory.used?tag=area:heap");
+            if (metric == null) {
+                return;
+            }
+            last = metric.path("measurements").path(0).path("value").asDouble();
+            max = Math.max(max, last);
+            sum += last;
+            count++;
+        }
+    }
+
+    /**
+     * 单个客户端记录的结果，避免并发写入
+     */
+    private static final class Samples {
+
+        private int[] statuses = new int[1024];
+
+        private long[] latencies = new long[1024];
+
+        private long[] firstBytes = new long[1024];
+
+        private int size;
+
+        void add(int status, long latency, long firstByte) {
+            if (size == statuses.length) {
+                statuses = Arrays.copyOf(statuses, size * 2);
+                latencies = Arrays.copyOf(latencies, size * 2);
+                firstBytes = Arrays.copyOf(firstBytes, size * 2);
+            }
+            statuses[size] = status;
+            latencies[size] = latency;
+            firstBytes[size] = firstByte;
+            size++;
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.statuses[i], other.latencies[i], other.firstBytes[i]);
+            }
+        }
+
+        long[] sorted(long[] values) {
+            long[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
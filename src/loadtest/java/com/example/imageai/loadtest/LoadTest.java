@@ -0,0 +1,45 @@
+package com.example.imageai.loadtest;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 压测入口
+ * <ul>
+ *     <li>stub —— 只启动模拟上游，直到进程被终止</li>
+ *     <li>load —— 只对已启动的服务压测，上游由别的进程模拟</li>
+ *     <li>run（默认）—— 启动模拟上游并压测，结束后输出上游调用次数</li>
+ * </ul>
+ * 被测服务需以stub配置启动，使上游地址指向模拟上游：
+ * mvn spring-boot:run -Dspring-boot.run.profiles=stub
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String command = args.length > 0 && !args[0].startsWith("--") ? args[0] : "run";
+        Options options = new Options(args);
+        switch (command) {
+            case "stub" -> {
+                StubUpstreamServer stub = new StubUpstreamServer(options);
+                stub.start();
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println("模拟上游: " + stub.summary())));
+                new CountDownLatch(1).await();
+            }
+            case "load" -> new LoadGenerator(options, "http://localhost:" + options.getInt("stub-port", 9090)
+                    + StubUpstreamServer.IMAGE_PATH).run();
+            case "run" -> {
+                StubUpstreamServer stub = new StubUpstreamServer(options);
+                stub.start();
+                try {
+                    new LoadGenerator(options, stub.baseUrl() + StubUpstreamServer.IMAGE_PATH).run();
+                    System.out.println("模拟上游:   " + stub.summary());
+                } finally {
+                    stub.stop();
+                }
+            }
+            default -> throw new IllegalArgumentException("未知命令: " + command + "，可用命令: stub、load、run");
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.example.imageai.loadtest;
+
+import com.example.imageai.audio.WavUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地模拟上游，代替通义千问、阿里云TTS和图片服务器，压测时不消耗真实配额也不需要外网
+ * <ul>
+ *     <li>POST /compatible-mode/v1/chat/completions —— OpenAI兼容格式，"stream": true时以SSE逐句返回</li>
+ *     <li>POST /stream/v1/tts —— nls-gateway格式，按format返回wav或mp3，大小与文本长度成正比</li>
+ *     <li>GET /images/{任意名称} —— 返回一张JPEG图片，像素相同，不同名称的文件内容不同</li>
+ * </ul>
+ * 各接口的延迟分布、错误率和数据大小均可配置，见 {@link #StubUpstreamServer(Options)}
+ */
+final class StubUpstreamServer {
+
+    static final String CHAT_PATH = "/compatible-mode/v1/chat/completions";
+
+    static final String TTS_PATH = "/stream/v1/tts";
+
+    static final String IMAGE_PATH = "/images/";
+
+    /**
+     * 描述由"场景，主体+动作。"组成的句子拼接而成，共1000种句子，流式接口按句合成语音时不会总是命中缓存
+     */
+    private static final String[] SCENES = {
+            "阳光明媚的午后", "窗外的草地上", "安静的街角", "傍晚的湖边", "热闹的集市里",
+            "古老的石桥旁", "下过雨的小巷里", "开满鲜花的院子中", "远处的山坡上", "明亮的客厅里"
+    };
+
+    private static final String[] SUBJECTS = {
+            "一只橘猫", "一个小女孩", "一位老人", "一只白鹭", "一群孩子",
+            "一条小狗", "一位年轻的母亲", "两只麻雀", "一个骑车的少年", "一位画家"
+    };
+
+    private static final String[] ACTIONS = {
+            "正眯着眼睛晒太阳", "提着红色的水桶跑过", "微笑着看向远方", "从水面轻轻掠过", "围在一起放风筝",
+            "追着一只蝴蝶跳来跳去", "推着婴儿车慢慢散步", "在枝头叽叽喳喳地叫", "沿着小路飞快地骑行", "专注地在画布上作画"
+    };
+
+    /**
+     * 16kHz 16位单声道wav每秒的字节数
+     */
+    private static final int WAV_BYTES_PER_SECOND = 32000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final int port;
+
+    private final LatencyDistribution qianWenLatency;
+
+    private final LatencyDistribution streamInterval;
+
+    private final double qianWenErrorRate;
+
+    private final double qianWenThrottleRate;
+
+    private final int descriptionSentences;
+
+    private final LatencyDistribution ttsLatency;
+
+    private final double ttsErrorRate;
+
+    private final double ttsCharsPerSecond;
+
+    private final LatencyDistribution imageLatency;
+
+    private final byte[] image;
+
+    private final LongAdder chatRequests = new LongAdder();
+
+    private final LongAdder chatErrors = new LongAdder();
+
+    private final LongAdder ttsRequests = new LongAdder();
+
+    private final LongAdder ttsErrors = new LongAdder();
+
+    private final LongAdder imageRequests = new LongAdder();
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    /**
+     * 可用参数（括号内为默认值）：
+     * <ul>
+     *     <li>--stub-port (9090)</li>
+     *     <li>--qianwen-latency (lognormal:800:3000)、--qianwen-stream-interval (fixed:40)：整体延迟和流式响应中两句之间的间隔</li>
+     *     <li>--qianwen-error-rate (0)、--qianwen-throttle-rate (0)：返回500和429的比例</li>
+     *     <li>--description-sentences (6)：描述的句子数，每句约20字</li>
+     *     <li>--tts-latency (lognormal:300:1200)、--tts-error-rate (0)</li>
+     *     <li>--tts-chars-per-second (4)：语速，决定返回的语音时长和大小</li>
+     *     <li>--image-latency (fixed:20)、--image-width (1600)、--image-height (1200)</li>
+     * </ul>
+     */
+    StubUpstreamServer(Options options) {
+        this.port = options.getInt("stub-port", 9090);
+        this.qianWenLatency = options.getLatency("qianwen-latency", "lognormal:800:3000");
+        this.streamInterval = options.getLatency("qianwen-stream-interval", "fixed:40");
+        this.qianWenErrorRate = options.getDouble("qianwen-error-rate", 0);
+        this.qianWenThrottleRate = options.getDouble("qianwen-throttle-rate", 0);
+        this.descriptionSentences = options.getInt("description-sentences", 6);
+        this.ttsLatency = options.getLatency("tts-latency", "lognormal:300:1200");
+        this.ttsErrorRate = options.getDouble("tts-error-rate", 0);
+        this.ttsCharsPerSecond = options.getDouble("tts-chars-per-second", 4);
+        this.imageLatency = options.getLatency("image-latency", "fixed:20");
+        this.image = jpeg(options.getInt("image-width", 1600), options.getInt("image-height", 1200));
+    }
+
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext(CHAT_PATH, exchange -> handle(exchange, this::chat));
+        server.createContext(TTS_PATH, exchange -> handle(exchange, this::tts));
+        server.createContext(IMAGE_PATH, exchange -> handle(exchange, this::image));
+        server.start();
+        System.out.printf("模拟上游已启动: http://localhost:%d%n", port);
+        System.out.printf("  通义千问: 延迟=%s, 流式间隔=%s, 错误率=%.3f, 限流率=%.3f, 句子数=%d%n",
+                qianWenLatency, streamInterval, qianWenErrorRate, qianWenThrottleRate, descriptionSentences);
+        System.out.printf("  TTS:      延迟=%s, 错误率=%.3f, 语速=%.1f字/秒%n", ttsLatency, ttsErrorRate, ttsCharsPerSecond);
+        System.out.printf("  图片:     延迟=%s, 大小=%d bytes%n", imageLatency, image.length);
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + port;
+    }
+
+    String summary() {
+        return String.format("通义千问 %d 次（错误 %d），TTS %d 次（错误 %d），图片 %d 次",
+                chatRequests.sum(), chatErrors.sum(), ttsRequests.sum(), ttsErrors.sum(), imageRequests.sum());
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException, InterruptedException;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) {
+        try (exchange) {
+            handler.handle(exchange);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // 客户端超时或断开连接，忽略
+        }
+    }
+
+    private void chat(HttpExchange exchange) throws IOException, InterruptedException {
+        chatRequests.increment();
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        Thread.sleep(qianWenLatency.sample());
+
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < qianWenThrottleRate) {
+            chatErrors.increment();
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            sendJson(exchange, 429, Map.of("error", Map.of("message", "Requests rate limit exceeded", "type", "throttling")));
+            return;
+        }
+        if (roll < qianWenThrottleRate + qianWenErrorRate) {
+            chatErrors.increment();
+            sendJson(exchange, 500, Map.of("error", Map.of("message", "stub internal error", "type", "internal_error")));
+            return;
+        }
+
+        // 每次随机生成描述：DOWNLOAD模式下各图片像素相同，按请求体生成会让TTS总是命中缓存
+        List<String> sentences = describe(ThreadLocalRandom.current().nextLong());
+        JsonNode request = objectMapper.readTree(body);
+        if (!request.path("stream").asBoolean(false)) {
+            sendJson(exchange, 200, Map.of(
+                    "id", "chatcmpl-stub",
+                    "object", "chat.completion",
+                    "model", request.path("model").asText(),
+                    "choices", List.of(Map.of(
+                            "index", 0,
+                            "message", Map.of("role", "assistant", "content", String.join("", sentences)),
+                            "finish_reason", "stop"))));
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream output = exchange.getResponseBody();
+        for (int i = 0; i < sentences.size(); i++) {
+            if (i > 0) {
+                Thread.sleep(streamInterval.sample());
+            }
+            Map<String, Object> chunk = Map.of(
+                    "id", "chatcmpl-stub",
+                    "object", "chat.completion.chunk",
+                    "choices", List.of(Map.of("index", 0, "delta", Map.of("content", sentences.get(i)))));
+            output.write(("data: " + objectMapper.writeValueAsString(chunk) + "\n\n").getBytes(StandardCharsets.UTF_8));
+            output.flush();
+        }
+        output.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void tts(HttpExchange exchange) throws IOException, InterruptedException {
+        ttsRequests.increment();
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        Thread.sleep(ttsLatency.sample());
+
+        if (ThreadLocalRandom.current().nextDouble() < ttsErrorRate) {
+            ttsErrors.increment();
+            sendJson(exchange, 500, Map.of("status", 50000000, "message", "stub internal error"));
+            return;
+        }
+
+        String text = request.path("text").asText();
+        double seconds = Math.max(0.5, text.codePointCount(0, text.length()) / ttsCharsPerSecond);
+        byte[] audio;
+        if ("mp3".equals(request.path("format").asText())) {
+            // 约32kbps；帧同步字开头即可被识别为mp3
+            audio = new byte[(int) (seconds * 4000)];
+            audio[0] = (byte) 0xFF;
+            audio[1] = (byte) 0xF3;
+            exchange.getResponseHeaders().set("Content-Type", "audio/mpeg");
+        } else {
+            int dataSize = (int) (seconds * WAV_BYTES_PER_SECOND) & ~1;
+            audio = new byte[WavUtils.HEADER_SIZE + dataSize];
+            System.arraycopy(WavUtils.header(16000, 1, 16, dataSize), 0, audio, 0, WavUtils.HEADER_SIZE);
+            exchange.getResponseHeaders().set("Content-Type", "audio/wav");
+        }
+        exchange.sendResponseHeaders(200, audio.length);
+        exchange.getResponseBody().write(audio);
+    }
+
+    private void image(HttpExchange exchange) throws IOException, InterruptedException {
+        imageRequests.increment();
+        Thread.sleep(imageLatency.sample());
+        // 在SOI之后插入一个内容为请求路径的COM段：像素不变，但不同URL的图片字节不同，不会命中按内容哈希的描述缓存
+        byte[] comment = exchange.getRequestURI().getPath().getBytes(StandardCharsets.UTF_8);
+        int segmentLength = comment.length + 2;
+        byte[] marker = {(byte) 0xFF, (byte) 0xFE, (byte) (segmentLength >> 8), (byte) segmentLength};
+        exchange.getResponseHeaders().set("Content-Type", "image/jpeg");
+        exchange.sendResponseHeaders(200, image.length + marker.length + comment.length);
+        OutputStream output = exchange.getResponseBody();
+        output.write(image, 0, 2);
+        output.write(marker);
+        output.write(comment);
+        output.write(image, 2, image.length - 2);
+    }
+
+    private List<String> describe(long seed) {
+        Random random = new Random(seed);
+        String[] sentences = new String[descriptionSentences];
+        for (int i = 0; i < sentences.length; i++) {
+            sentences[i] = SCENES[random.nextInt(SCENES.length)] + "，" + SUBJECTS[random.nextInt(SUBJECTS.length)]
+                    + ACTIONS[random.nextInt(ACTIONS.length)] + "。";
+        }
+        return List.of(sentences);
+    }
+
+    private void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    /**
+     * 生成一张带噪点的JPEG，压缩后的大小接近真实照片
+     */
+    private static byte[] jpeg(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (x * 255 / width + random.nextInt(48)) & 0xFF;
+                int g = (y * 255 / height + random.nextInt(48)) & 0xFF;
+                int b = random.nextInt(256);
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "jpg", output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output.toByteArray();
+    }
+}
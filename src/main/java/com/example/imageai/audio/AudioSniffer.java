@@ -0,0 +1,81 @@
+package com.example.imageai.audio;
+
+import com.example.imageai.dto.AudioFormat;
+
+/**
+ * 音频响应识别
+ * 只检查开头的几个字节，不复制、不解码整个响应
+ */
+public final class AudioSniffer {
+
+    /**
+     * 识别JSON错误响应时检查的开头字节数
+     */
+    private static final int JSON_PROBE_BYTES = 16;
+
+    private static final int MIN_AUDIO_BYTES = 8;
+
+    /**
+     * 无法识别格式时，大小在此范围内的数据仍当作音频
+     */
+    private static final int MIN_UNKNOWN_AUDIO_BYTES = 1024;
+
+    private static final int MAX_UNKNOWN_AUDIO_BYTES = 10 * 1024 * 1024;
+
+    private AudioSniffer() {
+    }
+
+    /**
+     * 按文件头识别音频格式
+     * @param data 音频数据
+     * @return 音频格式，无法识别时返回null
+     */
+    public static AudioFormat format(byte[] data) {
+        if (data == null || data.length < 4) {
+            return null;
+        }
+        // WAV: "RIFF"
+        if (data[0] == 'R' && data[1] == 'I' && data[2] == 'F' && data[3] == 'F') {
+            return AudioFormat.WAV;
+        }
+        // MP3: ID3标签，或帧同步字（11个1）
+        if ((data[0] == 'I' && data[1] == 'D' && data[2] == '3')
+                || ((data[0] & 0xFF) == 0xFF && (data[1] & 0xE0) == 0xE0)) {
+            return AudioFormat.MP3;
+        }
+        return null;
+    }
+
+    /**
+     * 是否像JSON对象（TTS出错时返回JSON错误信息而不是音频）
+     * 跳过开头的空白后第一个字符为'{'
+     */
+    public static boolean looksLikeJson(byte[] data) {
+        if (data == null) {
+            return false;
+        }
+        int limit = Math.min(data.length, JSON_PROBE_BYTES);
+        for (int i = 0; i < limit; i++) {
+            byte b = data[i];
+            if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                continue;
+            }
+            return b == '{';
+        }
+        return false;
+    }
+
+    /**
+     * 是否为有效的音频数据
+     * 可识别的文件头直接通过；无法识别但大小合理（1KB到10MB）的数据也当作音频
+     */
+    public static boolean isAudio(byte[] data) {
+        if (data == null || data.length < MIN_AUDIO_BYTES) {
+            return false;
+        }
+        if (format(data) != null) {
+            return true;
+        }
+        return data.length > MIN_UNKNOWN_AUDIO_BYTES && data.length < MAX_UNKNOWN_AUDIO_BYTES;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.imageai.audio;
+
+import java.util.Optional;
+
+/**
+ * 语音存储，供二进制语音接口按ID读取
+ */
+public interface AudioStore {
+
+    /**
+     * 保存语音数据
+     * @param data 语音字节数组
+     * @param format 语音文件类型
+     * @return 语音ID，相同内容返回相同ID
+     */
+    String put(byte[] data, String format);
+
+    /**
+     * 读取语音数据
+     * @param id 语音ID
+     * @return 语音数据，不存在或已过期时为空
+     */
+    Optional<StoredAudio> get(String id);
+}
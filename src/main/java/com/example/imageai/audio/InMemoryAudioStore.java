@@ -0,0 +1,89 @@
+package com.example.imageai.audio;
+
+import com.example.imageai.util.Hashing;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 基于内存的语音存储（audio.store.type=memory）
+ * 以内容哈希作为ID，按总字节数做LRU淘汰，并按TTL过期
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "audio.store.type", havingValue = "memory")
+public class InMemoryAudioStore implements AudioStore {
+
+    private final long maxBytes;
+
+    private final long ttlMillis;
+
+    /**
+     * 按访问顺序排列，最久未访问的在前
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    private long totalBytes;
+
+    public InMemoryAudioStore(@Value("${audio.store.max-bytes:268435456}") long maxBytes,
+                              @Value("${audio.store.ttl:30m}") Duration ttl) {
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    @Override
+    public String put(byte[] data, String format) {
+        String id = Hashing.sha256Hex(data);
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry previous = entries.put(id, new Entry(StoredAudio.inMemory(id, format, data), now));
+            if (previous != null) {
+                totalBytes -= previous.audio().length();
+            }
+            totalBytes += data.length;
+            evict(now);
+        }
+        return id;
+    }
+
+    @Override
+    public Optional<StoredAudio> get(String id) {
+        synchronized (entries) {
+            Entry entry = entries.get(id);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            if (System.currentTimeMillis() - entry.createdAt() > ttlMillis) {
+                entries.remove(id);
+                totalBytes -= entry.audio().length();
+                return Optional.empty();
+            }
+            return Optional.of(entry.audio());
+        }
+    }
+
+    /**
+     * 淘汰过期条目，再按LRU淘汰直到总大小不超过上限
+     */
+    private void evict(long now) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (totalBytes <= maxBytes && now - entry.createdAt() <= ttlMillis) {
+                continue;
+            }
+            iterator.remove();
+            totalBytes -= entry.audio().length();
+        }
+    }
+
+    private record Entry(StoredAudio audio, long createdAt) {
+    }
+}
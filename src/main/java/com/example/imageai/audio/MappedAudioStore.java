@@ -0,0 +1,470 @@
+package com.example.imageai.audio;
+
+import com.example.imageai.util.Hashing;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * 基于内存映射文件的语音存储（audio.store.type=mapped，默认）
+ * 语音追加写入固定大小的分段文件，每个分段整体映射到内存（MappedByteBuffer），
+ * 语音数据不在Java堆中，由操作系统页缓存管理；内存中只保留 语音ID -> (分段, 偏移, 长度) 的索引，
+ * 保留大量语音时GC暂停不随之增长。
+ * <p>
+ * 每条记录自带头部（魔数、写入时间、长度、ID、格式），魔数最后写入，启动时顺序扫描分段即可重建索引，
+ * 写了一半的记录没有魔数，扫描到此为止。
+ * 超过容量按LRU淘汰、超过TTL过期的语音只从索引中移除，磁盘空间由压缩回收：
+ * 已写满的分段中有效数据低于阈值时，把仍有效的记录复制到当前分段，再删除旧分段
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "audio.store.type", havingValue = "mapped", matchIfMissing = true)
+public class MappedAudioStore implements AudioStore {
+
+    private static final int MAGIC = 0x31445541; // "AUD1"，小端序
+
+    /**
+     * 记录头的固定部分：魔数(4) + 写入时间(8) + 数据长度(4) + ID长度(1) + 格式长度(1)
+     */
+    private static final int FIXED_HEADER_SIZE = 18;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    /**
+     * 压缩后的旧分段延迟删除，已按文件名交给sendfile发送的响应仍能打开文件
+     */
+    private static final long RETIRE_DELAY_MILLIS = 60_000;
+
+    private final Path dir;
+
+    private final int segmentBytes;
+
+    private final long maxBytes;
+
+    private final long ttlMillis;
+
+    private final double compactionThreshold;
+
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+
+    /**
+     * 按访问顺序排列，最久未访问的在前
+     */
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(1024, 0.75f, true);
+
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    private Segment active;
+
+    /**
+     * 索引中全部语音的字节数
+     */
+    private long liveBytes;
+
+    public MappedAudioStore(@Value("${audio.store.dir:./data/audio}") String dir,
+                            @Value("${audio.store.segment-bytes:67108864}") int segmentBytes,
+                            @Value("${audio.store.max-bytes:4294967296}") long maxBytes,
+                            @Value("${audio.store.ttl:24h}") Duration ttl,
+                            @Value("${audio.store.compaction-threshold:0.5}") double compactionThreshold) {
+        this.dir = Path.of(dir);
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttl.toMillis();
+        this.compactionThreshold = compactionThreshold;
+        load();
+    }
+
+    @Override
+    public String put(byte[] data, String format) {
+        String id = Hashing.sha256Hex(data);
+        long now = System.currentTimeMillis();
+        boolean rolled;
+        synchronized (this) {
+            Entry existing = index.get(id);
+            if (existing != null && !expired(existing, now)) {
+                return id;
+            }
+            if (existing != null) {
+                remove(existing);
+            }
+            Segment before = active;
+            int offset = write(id, format, now, ByteBuffer.wrap(data));
+            Entry entry = new Entry(id, format, now, active, offset, data.length);
+            track(entry);
+            index.put(id, entry);
+            evict();
+            rolled = active != before;
+        }
+        if (rolled) {
+            scheduleCompaction();
+        }
+        return id;
+    }
+
+    @Override
+    public Optional<StoredAudio> get(String id) {
+        synchronized (this) {
+            Entry entry = index.get(id);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            if (expired(entry, System.currentTimeMillis())) {
+                remove(entry);
+                return Optional.empty();
+            }
+            ByteBuffer data = entry.segment.buffer.slice(entry.offset, entry.length);
+            return Optional.of(StoredAudio.mapped(id, entry.format, data, entry.segment.path, entry.offset));
+        }
+    }
+
+    /**
+     * 把映射区写回磁盘并关闭分段文件
+     */
+    @PreDestroy
+    public synchronized void close() {
+        for (Segment segment : segments.values()) {
+            segment.buffer.force();
+            closeQuietly(segment);
+        }
+    }
+
+    /**
+     * 向当前分段追加一条记录，放不下时先切换到新分段
+     * 数据和头部其余字段写完后才写魔数
+     * @return 语音数据在当前分段中的偏移
+     */
+    private int write(String id, String format, long createdAt, ByteBuffer data) {
+        byte[] idBytes = id.getBytes(StandardCharsets.US_ASCII);
+        byte[] formatBytes = format.getBytes(StandardCharsets.US_ASCII);
+        int length = data.remaining();
+        int recordSize = FIXED_HEADER_SIZE + idBytes.length + formatBytes.length + length;
+        if (recordSize > segmentBytes) {
+            throw new RuntimeException("语音大小超过分段大小: " + length + " bytes");
+        }
+        if (segmentBytes - active.writePosition < recordSize) {
+            roll();
+        }
+        MappedByteBuffer buffer = active.buffer;
+        int position = active.writePosition;
+        int dataOffset = position + recordSize - length;
+        buffer.putLong(position + 4, createdAt)
+                .putInt(position + 12, length)
+                .put(position + 16, (byte) idBytes.length)
+                .put(position + 17, (byte) formatBytes.length)
+                .put(position + FIXED_HEADER_SIZE, idBytes)
+                .put(position + FIXED_HEADER_SIZE + idBytes.length, formatBytes)
+                .put(dataOffset, data, data.position(), length);
+        buffer.putInt(position, MAGIC);
+        active.writePosition = position + recordSize;
+        active.writtenBytes += length;
+        return dataOffset;
+    }
+
+    /**
+     * 记入所在分段的有效数据
+     */
+    private void track(Entry entry) {
+        entry.segment.entries.add(entry);
+        entry.segment.liveBytes += entry.length;
+        liveBytes += entry.length;
+    }
+
+    /**
+     * 当前分段写满，新建下一个分段
+     */
+    private void roll() {
+        int number = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        active = openSegment(dir.resolve(SEGMENT_PREFIX + String.format("%06d", number) + SEGMENT_SUFFIX), number);
+        segments.put(number, active);
+    }
+
+    /**
+     * 按LRU淘汰直到总大小不超过上限，只从索引中移除，空间由压缩回收
+     */
+    private void evict() {
+        Iterator<Entry> iterator = index.values().iterator();
+        while (liveBytes > maxBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            release(entry);
+        }
+    }
+
+    private void remove(Entry entry) {
+        index.remove(entry.id);
+        release(entry);
+    }
+
+    private void release(Entry entry) {
+        entry.removed = true;
+        entry.segment.liveBytes -= entry.length;
+        liveBytes -= entry.length;
+    }
+
+    private boolean expired(Entry entry, long now) {
+        return now - entry.createdAt > ttlMillis;
+    }
+
+    private void scheduleCompaction() {
+        if (compacting.compareAndSet(false, true)) {
+            Schedulers.boundedElastic().schedule(() -> {
+                try {
+                    compact();
+                } catch (RuntimeException e) {
+                    log.warn("语音存储压缩失败", e);
+                } finally {
+                    compacting.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * 清理过期语音，再压缩有效数据低于阈值的已写满分段
+     * 每复制一条记录加锁一次，压缩期间读写请求只在单条记录的复制上等待
+     */
+    private void compact() {
+        List<Segment> candidates = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            index.values().removeIf(entry -> {
+                if (!expired(entry, now)) {
+                    return false;
+                }
+                release(entry);
+                return true;
+            });
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.liveBytes < segment.writtenBytes * compactionThreshold) {
+                    candidates.add(segment);
+                }
+            }
+        }
+        for (Segment segment : candidates) {
+            long moved = 0;
+            for (Entry entry : List.copyOf(segment.entries)) {
+                synchronized (this) {
+                    if (entry.removed || entry.segment != segment) {
+                        continue;
+                    }
+                    int offset = write(entry.id, entry.format, entry.createdAt,
+                            segment.buffer.slice(entry.offset, entry.length));
+                    // 索引项就地更新位置，不改变LRU顺序
+                    segment.liveBytes -= entry.length;
+                    liveBytes -= entry.length;
+                    entry.segment = active;
+                    entry.offset = offset;
+                    track(entry);
+                    moved += entry.length;
+                }
+            }
+            synchronized (this) {
+                segments.remove(segment.number);
+            }
+            retire(segment);
+            log.info("语音存储分段已压缩: {}, 迁移 {} bytes", segment.path.getFileName(), moved);
+        }
+    }
+
+    /**
+     * 关闭已压缩的分段，延迟删除文件
+     * 映射区在关闭通道后仍然有效，正在读取的切片不受影响，映射随缓冲区被回收而释放
+     */
+    private void retire(Segment segment) {
+        closeQuietly(segment);
+        Schedulers.boundedElastic().schedule(() -> {
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                log.warn("删除语音存储分段失败: {}", segment.path, e);
+            }
+        }, RETIRE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 启动时映射已有的分段并扫描记录重建索引，最后一个分段继续写入
+     */
+    private void load() {
+        try {
+            Files.createDirectories(dir);
+            List<Path> files;
+            try (Stream<Path> stream = Files.list(dir)) {
+                files = stream.filter(file -> {
+                            String name = file.getFileName().toString();
+                            return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                        })
+                        .sorted()
+                        .toList();
+            }
+            long now = System.currentTimeMillis();
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int number = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                Segment segment = openSegment(file, number);
+                segments.put(number, segment);
+                scan(segment, now);
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new RuntimeException("加载语音存储失败: " + dir, e);
+        }
+        if (segments.isEmpty()) {
+            roll();
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+        evict();
+        log.info("语音存储已加载: {} 条, {} bytes, 分段 {} 个", index.size(), liveBytes, segments.size());
+        scheduleCompaction();
+    }
+
+    /**
+     * 顺序扫描分段中的记录，后写入的同ID记录覆盖先写入的，过期的记录不加入索引
+     */
+    private void scan(Segment segment, long now) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + FIXED_HEADER_SIZE <= buffer.capacity() && buffer.getInt(position) == MAGIC) {
+            long createdAt = buffer.getLong(position + 4);
+            int length = buffer.getInt(position + 12);
+            int idLength = buffer.get(position + 16) & 0xFF;
+            int formatLength = buffer.get(position + 17) & 0xFF;
+            int dataOffset = position + FIXED_HEADER_SIZE + idLength + formatLength;
+            if (length < 0 || (long) dataOffset + length > buffer.capacity()) {
+                log.warn("语音存储分段在偏移 {} 处损坏，之后的记录被忽略: {}", position, segment.path);
+                break;
+            }
+            String id = ascii(buffer, position + FIXED_HEADER_SIZE, idLength);
+            String format = ascii(buffer, position + FIXED_HEADER_SIZE + idLength, formatLength);
+            segment.writtenBytes += length;
+            Entry previous = index.get(id);
+            if (previous != null) {
+                remove(previous);
+            }
+            if (now - createdAt <= ttlMillis) {
+                Entry entry = new Entry(id, format, createdAt, segment, dataOffset, length);
+                track(entry);
+                index.put(id, entry);
+            }
+            position = dataOffset + length;
+        }
+        segment.writePosition = position;
+    }
+
+    private Segment openSegment(Path file, int number) {
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            // 已有分段按实际大小映射，分段大小配置修改后旧分段仍可读取
+            long size = Math.max(channel.size(), segmentBytes);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return new Segment(number, file, channel, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("打开语音存储分段失败: " + file, e);
+        }
+    }
+
+    private static String ascii(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static void closeQuietly(Segment segment) {
+        try {
+            segment.channel.close();
+        } catch (IOException e) {
+            log.debug("关闭语音存储分段失败: {}", segment.path, e);
+        }
+    }
+
+    /**
+     * 分段文件
+     */
+    private static final class Segment {
+
+        final int number;
+
+        final Path path;
+
+        final FileChannel channel;
+
+        final MappedByteBuffer buffer;
+
+        /**
+         * 写过的全部记录，压缩时从中找出仍有效的记录
+         */
+        final List<Entry> entries = new ArrayList<>();
+
+        int writePosition;
+
+        /**
+         * 写过的语音字节数，与liveBytes之比即有效数据比例
+         */
+        long writtenBytes;
+
+        long liveBytes;
+
+        Segment(int number, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * 索引项，压缩时就地更新所在的分段和偏移
+     */
+    private static final class Entry {
+
+        final String id;
+
+        final String format;
+
+        final long createdAt;
+
+        final int length;
+
+        Segment segment;
+
+        int offset;
+
+        boolean removed;
+
+        Entry(String id, String format, long createdAt, Segment segment, int offset, int length) {
+            this.id = id;
+            this.format = format;
+            this.createdAt = createdAt;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
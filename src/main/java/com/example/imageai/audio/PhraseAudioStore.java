@@ -0,0 +1,237 @@
+package com.example.imageai.audio;
+
+import com.example.imageai.util.Hashing;
+import com.example.imageai.util.SentenceSplitter;
+import com.example.imageai.util.TextChunker;
+import com.example.imageai.util.TextNormalizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 常用短语的预合成语音
+ * 故事开头等常用短语按 (短语, 音色, 格式) 预先合成，顺序追加写入一个数据文件，
+ * 再以只读方式映射到内存（MappedByteBuffer）：语音数据不占用Java堆，由操作系统页缓存管理。
+ * 索引文件记录每条语音的键、偏移和长度，重启后直接映射已有的文件，无需重新合成
+ */
+@Slf4j
+@Component
+public class PhraseAudioStore {
+
+    private static final String DATA_FILE = "phrases.dat";
+
+    private static final String INDEX_FILE = "phrases.idx";
+
+    /**
+     * 规范化后的短语，按长度降序排列，匹配时优先匹配最长的短语
+     */
+    private final List<String> phrases;
+
+    private final Path dir;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    public PhraseAudioStore(@Value("${ali.tts.phrases.list:从前，,很久很久以前，,在一个阳光明媚的早晨，}") List<String> phrases,
+                            @Value("${ali.tts.phrases.dir:${java.io.tmpdir}/image-ai-phrases}") String dir) {
+        this.phrases = phrases.stream()
+                .map(TextNormalizer::normalize)
+                .filter(phrase -> {
+                    // 不以标点结尾的短语可能只是某个词的前半部分，拼接处也没有停顿，不参与匹配
+                    boolean valid = !phrase.isEmpty() && isBoundary(phrase.charAt(phrase.length() - 1));
+                    if (!valid) {
+                        log.warn("常用短语需以标点结尾，已忽略: {}", phrase);
+                    }
+                    return valid;
+                })
+                .distinct()
+                .sorted(Comparator.comparingInt(String::length).reversed())
+                .toList();
+        this.dir = Path.of(dir);
+        load();
+    }
+
+    public List<String> phrases() {
+        return phrases;
+    }
+
+    /**
+     * 查找文本开头的常用短语
+     * @param text 清理后的文本
+     * @param voice 音色
+     * @param format 语音格式
+     * @return 匹配的短语及其语音，没有匹配或尚未预合成时返回null
+     */
+    public Match match(String text, String voice, String format) {
+        Snapshot current = snapshot;
+        if (current.index().isEmpty() || text == null) {
+            return null;
+        }
+        for (String phrase : phrases) {
+            if (!text.startsWith(phrase)) {
+                continue;
+            }
+            byte[] audio = current.read(key(phrase, voice, format));
+            if (audio != null) {
+                return new Match(phrase, audio);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 是否已有该短语的语音
+     */
+    public boolean contains(String phrase, String voice, String format) {
+        return snapshot.index().containsKey(key(phrase, voice, format));
+    }
+
+    /**
+     * 追加写入预合成的语音并重新映射
+     * 先追加数据再原子替换索引文件，写入中途失败时已有的索引仍然有效
+     * @param audios 合成结果
+     */
+    public synchronized void append(List<PhraseAudio> audios) {
+        if (audios.isEmpty()) {
+            return;
+        }
+        Map<String, Entry> index = new HashMap<>(snapshot.index());
+        try {
+            Files.createDirectories(dir);
+            try (FileChannel channel = FileChannel.open(dir.resolve(DATA_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                long offset = channel.size();
+                for (PhraseAudio audio : audios) {
+                    ByteBuffer buffer = ByteBuffer.wrap(audio.data());
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    index.put(key(audio.phrase(), audio.voice(), audio.format()), new Entry(offset, audio.data().length));
+                    offset += audio.data().length;
+                }
+                channel.force(false);
+            }
+            writeIndex(index);
+            snapshot = map(index);
+            log.info("常用短语语音已写入: {} 条，共 {} 条, {} bytes", audios.size(), index.size(), snapshot.data().capacity());
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入常用短语语音失败: " + dir, e);
+        }
+    }
+
+    public int size() {
+        return snapshot.index().size();
+    }
+
+    /**
+     * 启动时映射已有的数据文件，文件不存在或损坏时从空开始
+     */
+    private void load() {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(dir.resolve(INDEX_FILE)))) {
+            int count = in.readInt();
+            Map<String, Entry> index = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                index.put(in.readUTF(), new Entry(in.readLong(), in.readInt()));
+            }
+            snapshot = map(index);
+            log.info("已映射常用短语语音: {} 条, {} bytes", index.size(), snapshot.data().capacity());
+        } catch (NoSuchFileException e) {
+            log.debug("常用短语语音文件不存在，启动后预合成: {}", dir);
+        } catch (IOException | RuntimeException e) {
+            log.warn("常用短语语音文件损坏，重新预合成: {}, {}", dir, e.getMessage());
+        }
+    }
+
+    private void writeIndex(Map<String, Entry> index) throws IOException {
+        Path tmp = dir.resolve(INDEX_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+            out.writeInt(index.size());
+            for (Map.Entry<String, Entry> entry : index.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().offset());
+                out.writeInt(entry.getValue().length());
+            }
+        }
+        Files.move(tmp, dir.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 只读映射整个数据文件，映射建立后即可关闭文件通道
+     */
+    private Snapshot map(Map<String, Entry> index) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.resolve(DATA_FILE), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("常用短语语音文件过大: " + size);
+            }
+            for (Entry entry : index.values()) {
+                if (entry.offset() < 0 || entry.offset() + entry.length() > size) {
+                    throw new IOException("索引超出数据文件范围");
+                }
+            }
+            return new Snapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), Map.copyOf(index));
+        }
+    }
+
+    private static String key(String phrase, String voice, String format) {
+        return Hashing.sha256Hex(phrase, voice, format);
+    }
+
+    private static boolean isBoundary(char c) {
+        return SentenceSplitter.isSentenceEnd(c) || TextChunker.isPause(c);
+    }
+
+    /**
+     * 预合成的一条短语语音
+     */
+    public record PhraseAudio(String phrase, String voice, String format, byte[] data) {
+    }
+
+    /**
+     * 匹配到的短语
+     * @param phrase 短语
+     * @param audio 短语的语音
+     */
+    public record Match(String phrase, byte[] audio) {
+    }
+
+    private record Entry(long offset, int length) {
+    }
+
+    /**
+     * 映射的数据文件和索引，追加后整体替换
+     */
+    private record Snapshot(MappedByteBuffer data, Map<String, Entry> index) {
+
+        static final Snapshot EMPTY = new Snapshot(null, Map.of());
+
+        /**
+         * 从映射区复制出语音数据，绝对位置读取不改变缓冲区状态，可以并发调用
+         */
+        byte[] read(String key) {
+            Entry entry = index.get(key);
+            if (entry == null) {
+                return null;
+            }
+            byte[] audio = new byte[entry.length()];
+            data.get((int) entry.offset(), audio);
+            return audio;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.imageai.audio;
+
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * 已存储的语音数据
+ * @param id 语音ID（内容哈希）
+ * @param format 语音文件类型
+ * @param content 语音内容
+ * @param length 语音字节数
+ * @param file 语音所在的文件，内存存储时为null
+ * @param offset 语音在文件中的起始偏移
+ */
+public record StoredAudio(String id, String format, Resource content, long length, Path file, long offset) {
+
+    /**
+     * 保存在Java堆中的语音
+     */
+    public static StoredAudio inMemory(String id, String format, byte[] data) {
+        return new StoredAudio(id, format, new ByteArrayResource(data), data.length, null, 0);
+    }
+
+    /**
+     * 保存在映射文件中的语音
+     * @param data 映射区中该语音的只读切片
+     * @param file 分段文件
+     * @param offset 语音在分段文件中的起始偏移
+     */
+    public static StoredAudio mapped(String id, String format, ByteBuffer data, Path file, long offset) {
+        return new StoredAudio(id, format, new ByteBufferResource(data), data.remaining(), file, offset);
+    }
+}
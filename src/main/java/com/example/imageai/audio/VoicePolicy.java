@@ -0,0 +1,22 @@
+package com.example.imageai.audio;
+
+/**
+ * 请求未指定音色时的选择策略
+ */
+public enum VoicePolicy {
+
+    /**
+     * 始终使用配置的固定音色
+     */
+    FIXED,
+
+    /**
+     * 按文本内容哈希选择，相同的文本总是得到相同的音色，语音缓存可以复用
+     */
+    CONTENT,
+
+    /**
+     * 按客户端标识哈希选择，同一客户端始终听到同一个音色；没有客户端标识时按内容选择
+     */
+    CLIENT
+}
@@ -0,0 +1,98 @@
+package com.example.imageai.audio;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+
+/**
+ * TTS音色选择
+ * 音色是语音缓存键的一部分，随机选择会让相同文本的语音无法复用，
+ * 因此按配置的策略确定性地选择：固定音色、按内容哈希或按客户端哈希
+ */
+@Slf4j
+@Component
+public class VoiceSelector {
+
+    /**
+     * 阿里云TTS支持的音色列表
+     */
+    public static final List<String> VOICE_OPTIONS = List.of(
+            "xiaoyun",    // 小云，女声，标准
+            "xiaogang",   // 小刚，男声，标准
+            "xiaomeng",   // 小萌，女童声，活泼
+            "xiaoxue",    // 小雪，女声，温柔
+            "xiaofeng",   // 小峰，男声，成熟
+            "xiaoli",     // 小丽，女声，甜美
+            "ruoxi",      // 若汐，女声，知性
+            "siqi",       // 思琪，女声，温暖
+            "sijing",     // 思晶，女声，严肃
+            "aijia",      // 艾佳，女声，清晰
+            "aicheng",    // 艾诚，男声，浑厚
+            "aida",       // 艾达，男声，标准
+            "aining",     // 艾宁，女声，甜美
+            "ailun"       // 艾伦，男声，成熟
+    );
+
+    /**
+     * 请求参数中音色的校验规则，与VOICE_OPTIONS保持一致
+     */
+    public static final String VOICE_PATTERN =
+            "xiaoyun|xiaogang|xiaomeng|xiaoxue|xiaofeng|xiaoli|ruoxi|siqi|sijing|aijia|aicheng|aida|aining|ailun";
+
+    private final VoicePolicy policy;
+
+    private final String fixedVoice;
+
+    public VoiceSelector(@Value("${ali.tts.voice.policy:content}") VoicePolicy policy,
+                         @Value("${ali.tts.voice.fixed:xiaoyun}") String fixedVoice) {
+        if (!VOICE_OPTIONS.contains(fixedVoice)) {
+            throw new IllegalArgumentException("ali.tts.voice.fixed 不是支持的音色: " + fixedVoice);
+        }
+        this.policy = policy;
+        this.fixedVoice = fixedVoice;
+    }
+
+    /**
+     * 确定请求级的音色：请求中指定的优先，其次CLIENT策略下按客户端标识选择
+     * @param requested 请求中指定的音色，可以为空
+     * @param clientId 客户端标识，可以为空
+     * @return 音色，为null时由TTS按文本内容选择
+     */
+    public String forRequest(String requested, String clientId) {
+        if (StringUtils.hasText(requested)) {
+            return requested;
+        }
+        if (policy == VoicePolicy.CLIENT && StringUtils.hasText(clientId)) {
+            return pick(clientId);
+        }
+        return null;
+    }
+
+    /**
+     * 按内容选择音色
+     * @param content 文本内容，流式接口在文本生成前以图片URL代替
+     * @return 音色
+     */
+    public String forContent(String content) {
+        String voice = policy == VoicePolicy.FIXED ? fixedVoice : pick(content == null ? "" : content);
+        log.debug("按{}策略选择音色: {}", policy, voice);
+        return voice;
+    }
+
+    /**
+     * 未指定音色的请求可能用到的音色，预合成常用短语时按此范围合成
+     */
+    public List<String> candidateVoices() {
+        return policy == VoicePolicy.FIXED ? List.of(fixedVoice) : VOICE_OPTIONS;
+    }
+
+    /**
+     * String.hashCode的算法由语言规范确定，重启或多实例部署时同一输入总是得到同一个音色
+     */
+    private static String pick(String seed) {
+        return VOICE_OPTIONS.get(Math.floorMod(seed.hashCode(), VOICE_OPTIONS.size()));
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.imageai.audio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * WAV文件工具
+ * 生成PCM文件头，以及把多段格式相同的WAV拼接为一个文件
+ */
+public final class WavUtils {
+
+    /**
+     * 标准PCM文件头长度
+     */
+    public static final int HEADER_SIZE = 44;
+
+    private static final int RIFF = 0x46464952; // "RIFF"，小端序
+
+    private static final int WAVE = 0x45564157; // "WAVE"
+
+    private static final int FMT = 0x20746d66; // "fmt "
+
+    private static final int DATA = 0x61746164; // "data"
+
+    private WavUtils() {
+    }
+
+    /**
+     * 是否为WAV文件
+     */
+    public static boolean isWav(byte[] data) {
+        if (data == null || data.length < 12) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        return buffer.getInt(0) == RIFF && buffer.getInt(8) == WAVE;
+    }
+
+    /**
+     * 生成PCM格式的WAV文件头
+     * @param sampleRate 采样率
+     * @param channels 声道数
+     * @param bitsPerSample 每个样本的位数
+     * @param dataSize PCM数据字节数
+     * @return 44字节文件头
+     */
+    public static byte[] header(int sampleRate, int channels, int bitsPerSample, int dataSize) {
+        int blockAlign = channels * bitsPerSample / 8;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(RIFF).putInt(36 + dataSize).putInt(WAVE);
+        buffer.putInt(FMT).putInt(16)
+                .putShort((short) 1) // PCM
+                .putShort((short) channels)
+                .putInt(sampleRate)
+                .putInt(sampleRate * blockAlign)
+                .putShort((short) blockAlign)
+                .putShort((short) bitsPerSample);
+        buffer.putInt(DATA).putInt(dataSize);
+        return buffer.array();
+    }
+
+    /**
+     * 生成16位单声道的静音WAV
+     * @param sampleRate 采样率
+     * @param seconds 时长（秒）
+     * @return 完整的WAV文件
+     */
+    public static byte[] silence(int sampleRate, int seconds) {
+        int dataSize = sampleRate * seconds * 2; // 16位音频，每个样本2字节
+        byte[] wav = new byte[HEADER_SIZE + dataSize];
+        System.arraycopy(header(sampleRate, 1, 16, dataSize), 0, wav, 0, HEADER_SIZE);
+        // PCM数据部分保持默认的0，即静音
+        return wav;
+    }
+
+    /**
+     * 按顺序拼接多段WAV
+     * 各段的格式（fmt块）必须一致；结果沿用第一段的fmt块，只保留fmt和data两个块，并重写各块长度
+     * @param wavs 各段WAV文件
+     * @return 拼接后的WAV文件
+     */
+    public static byte[] concat(List<byte[]> wavs) {
+        if (wavs.isEmpty()) {
+            throw new IllegalArgumentException("没有需要拼接的音频");
+        }
+        if (wavs.size() == 1) {
+            return wavs.get(0);
+        }
+        Chunks first = parse(wavs.get(0));
+        byte[] format = Arrays.copyOfRange(wavs.get(0), first.fmtOffset, first.fmtOffset + first.fmtLength);
+        long dataSize = 0;
+        Chunks[] parsed = new Chunks[wavs.size()];
+        for (int i = 0; i < wavs.size(); i++) {
+            byte[] wav = wavs.get(i);
+            Chunks chunks = i == 0 ? first : parse(wav);
+            if (!Arrays.equals(wav, chunks.fmtOffset, chunks.fmtOffset + chunks.fmtLength, format, 0, format.length)) {
+                throw new IllegalArgumentException("第" + (i + 1) + "段音频格式与第一段不一致，无法拼接");
+            }
+            parsed[i] = chunks;
+            dataSize += chunks.dataLength;
+        }
+        // fmt块长度为奇数时需要补一个字节
+        int fmtPadded = format.length + (format.length & 1);
+        long total = 12 + 8 + fmtPadded + 8 + dataSize;
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("拼接后的音频过大: " + total + " bytes");
+        }
+        ByteBuffer out = ByteBuffer.allocate((int) total).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(RIFF).putInt((int) total - 8).putInt(WAVE);
+        out.putInt(FMT).putInt(format.length).put(format);
+        if (fmtPadded != format.length) {
+            out.put((byte) 0);
+        }
+        out.putInt(DATA).putInt((int) dataSize);
+        for (int i = 0; i < wavs.size(); i++) {
+            out.put(wavs.get(i), parsed[i].dataOffset, parsed[i].dataLength);
+        }
+        return out.array();
+    }
+
+    /**
+     * 查找fmt块和data块
+     * 流式生成的WAV中data块长度可能为0或0xFFFFFFFF，此时取到文件末尾
+     */
+    private static Chunks parse(byte[] wav) {
+        if (!isWav(wav)) {
+            throw new IllegalArgumentException("不是WAV格式的音频");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(wav).order(ByteOrder.LITTLE_ENDIAN);
+        int fmtOffset = -1;
+        int fmtLength = 0;
+        int position = 12;
+        while (position + 8 <= wav.length) {
+            int id = buffer.getInt(position);
+            long size = Integer.toUnsignedLong(buffer.getInt(position + 4));
+            int body = position + 8;
+            if (id == DATA) {
+                if (fmtOffset < 0) {
+                    break;
+                }
+                int available = wav.length - body;
+                int dataLength = size == 0 || size > available ? available : (int) size;
+                return new Chunks(fmtOffset, fmtLength, body, dataLength);
+            }
+            if (size > wav.length - body) {
+                break;
+            }
+            if (id == FMT) {
+                fmtOffset = body;
+                fmtLength = (int) size;
+            }
+            position = body + (int) size + (int) (size & 1);
+        }
+        throw new IllegalArgumentException("WAV文件缺少fmt块或data块");
+    }
+
+    private record Chunks(int fmtOffset, int fmtLength, int dataOffset, int dataLength) {
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.imageai.cache;
+
+import com.example.imageai.util.Hashing;
+import io.netty.buffer.ByteBuf;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 图片分析结果缓存
+ * 第一层：图片URL或图片内容哈希 -> 描述文本
+ * 第二层：(清理后的文本, 音色, 格式) 的哈希 -> 语音数据
+ */
+@Component
+public class AnalysisCache {
+
+    private final TieredCache descriptions;
+
+    private final TieredCache audio;
+
+    public AnalysisCache(@Value("${cache.description.max-bytes:16777216}") long descriptionMaxBytes,
+                         @Value("${cache.description.ttl:24h}") Duration descriptionTtl,
+                         @Value("${cache.audio.max-bytes:268435456}") long audioMaxBytes,
+                         @Value("${cache.audio.ttl:24h}") Duration audioTtl,
+                         @Value("${cache.disk.dir:}") String diskDir,
+                         @Value("${cache.disk.max-bytes:1073741824}") long diskMaxBytes) {
+        Path diskRoot = StringUtils.hasText(diskDir) ? Path.of(diskDir) : null;
+        this.descriptions = new TieredCache("description", descriptionMaxBytes, descriptionTtl, diskRoot, diskMaxBytes);
+        this.audio = new TieredCache("audio", audioMaxBytes, audioTtl, diskRoot, diskMaxBytes);
+    }
+
+    /**
+     * 图片URL对应的缓存键
+     */
+    public static String urlKey(String imageUrl) {
+        return Hashing.sha256Hex("url", imageUrl);
+    }
+
+    /**
+     * 图片内容对应的缓存键
+     */
+    public static String contentKey(ByteBuf imageData) {
+        return Hashing.sha256Hex(imageData);
+    }
+
+    /**
+     * 语音对应的缓存键
+     * @param cleanText 清理后的文本
+     * @param voice 音色
+     * @param format 语音格式
+     */
+    public static String audioKey(String cleanText, String voice, String format) {
+        return Hashing.sha256Hex(cleanText, voice, format);
+    }
+
+    public Mono<String> getDescription(String key) {
+        return descriptions.get(key).map(bytes -> new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    public void putDescription(String key, String description) {
+        descriptions.put(key, description.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Mono<byte[]> getAudio(String key) {
+        return audio.get(key);
+    }
+
+    public void putAudio(String key, byte[] audioBytes) {
+        audio.put(key, audioBytes);
+    }
+
+    public List<TieredCacheStats> stats() {
+        return List.of(descriptions.stats(), audio.stats());
+    }
+}
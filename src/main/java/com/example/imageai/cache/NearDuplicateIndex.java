@@ -0,0 +1,189 @@
+package com.example.imageai.cache;
+
+import com.example.imageai.image.PerceptualHash;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * 近似重复图片索引：图片感知哈希 -> 描述缓存键
+ * 同一张照片换了CDN地址、缩放或重新压缩后，按URL和按内容的缓存都无法命中，
+ * 感知哈希的汉明距离在阈值内即视为同一张图片，复用已有的描述（语音随之命中语音缓存）。
+ * <p>
+ * 采用多索引哈希（multi-index hashing）：64位哈希切成4段16位，每段一张表。
+ * 距离不超过r的两个哈希，至少有一段的距离不超过r/4（抽屉原理），
+ * 所以只需在每张表中探查与查询段距离不超过r/4的桶，再逐个核对完整距离。
+ * 哈希、缓存键和桶都存放在数组中，容量满后按写入顺序覆盖最早的条目
+ */
+@Component
+public class NearDuplicateIndex {
+
+    private static final int SEGMENTS = 4;
+
+    private static final int SEGMENT_BITS = 16;
+
+    private static final int BUCKETS = 1 << SEGMENT_BITS;
+
+    /**
+     * 每段的探查半径上限：半径2时每张表探查137个桶
+     */
+    private static final int MAX_SEGMENT_RADIUS = 2;
+
+    private final boolean enabled;
+
+    private final int maxDistance;
+
+    /**
+     * 各段16位值的探查掩码，即所有不超过探查半径的位翻转组合
+     */
+    private final int[] probes;
+
+    private final long[] hashes;
+
+    private final String[] keys;
+
+    /**
+     * buckets[段][段值] 为该桶中的条目下标，bucketSizes为各桶的实际长度
+     */
+    private final int[][][] buckets;
+
+    private final int[][] bucketSizes;
+
+    private int next;
+
+    private int size;
+
+    public NearDuplicateIndex(@Value("${image.dedup.enabled:true}") boolean enabled,
+                              @Value("${image.dedup.max-distance:6}") int maxDistance,
+                              @Value("${image.dedup.max-entries:100000}") int maxEntries) {
+        if (maxDistance < 0 || maxDistance / SEGMENTS > MAX_SEGMENT_RADIUS) {
+            throw new IllegalArgumentException("image.dedup.max-distance 取值范围为0到"
+                    + (SEGMENTS * (MAX_SEGMENT_RADIUS + 1) - 1) + ": " + maxDistance);
+        }
+        this.enabled = enabled;
+        this.maxDistance = maxDistance;
+        this.probes = probes(maxDistance / SEGMENTS);
+        int capacity = enabled ? maxEntries : 0;
+        this.hashes = new long[capacity];
+        this.keys = new String[capacity];
+        this.buckets = new int[SEGMENTS][capacity > 0 ? BUCKETS : 0][];
+        this.bucketSizes = new int[SEGMENTS][capacity > 0 ? BUCKETS : 0];
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * 查找距离最近且不超过阈值的图片
+     * @param hash 图片感知哈希
+     * @return 匹配的图片，没有时返回null
+     */
+    public synchronized Match find(long hash) {
+        if (size == 0) {
+            return null;
+        }
+        int best = -1;
+        int bestDistance = maxDistance + 1;
+        for (int segment = 0; segment < SEGMENTS; segment++) {
+            int value = segment(hash, segment);
+            for (int probe : probes) {
+                int bucket = value ^ probe;
+                int[] entries = buckets[segment][bucket];
+                int bucketSize = bucketSizes[segment][bucket];
+                for (int i = 0; i < bucketSize; i++) {
+                    int entry = entries[i];
+                    int distance = PerceptualHash.distance(hash, hashes[entry]);
+                    if (distance < bestDistance) {
+                        best = entry;
+                        bestDistance = distance;
+                    }
+                }
+            }
+        }
+        return best < 0 ? null : new Match(keys[best], bestDistance);
+    }
+
+    /**
+     * 加入索引
+     * @param hash 图片感知哈希
+     * @param key 描述缓存键
+     */
+    public synchronized void add(long hash, String key) {
+        if (hashes.length == 0) {
+            return;
+        }
+        int entry = next;
+        if (size == hashes.length) {
+            // 已满，覆盖最早的条目
+            for (int segment = 0; segment < SEGMENTS; segment++) {
+                remove(segment, segment(hashes[entry], segment), entry);
+            }
+        } else {
+            size++;
+        }
+        hashes[entry] = hash;
+        keys[entry] = key;
+        for (int segment = 0; segment < SEGMENTS; segment++) {
+            insert(segment, segment(hash, segment), entry);
+        }
+        next = (entry + 1) % hashes.length;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void insert(int segment, int bucket, int entry) {
+        int[] entries = buckets[segment][bucket];
+        int bucketSize = bucketSizes[segment][bucket];
+        if (entries == null) {
+            entries = new int[2];
+        } else if (bucketSize == entries.length) {
+            entries = Arrays.copyOf(entries, bucketSize * 2);
+        }
+        entries[bucketSize] = entry;
+        buckets[segment][bucket] = entries;
+        bucketSizes[segment][bucket] = bucketSize + 1;
+    }
+
+    private void remove(int segment, int bucket, int entry) {
+        int[] entries = buckets[segment][bucket];
+        int bucketSize = bucketSizes[segment][bucket];
+        for (int i = 0; i < bucketSize; i++) {
+            if (entries[i] == entry) {
+                // 与最后一个交换，桶内顺序无关
+                entries[i] = entries[bucketSize - 1];
+                bucketSizes[segment][bucket] = bucketSize - 1;
+                return;
+            }
+        }
+    }
+
+    private static int segment(long hash, int segment) {
+        return (int) (hash >>> (segment * SEGMENT_BITS)) & (BUCKETS - 1);
+    }
+
+    /**
+     * 不超过radius个位翻转的所有16位掩码
+     */
+    private static int[] probes(int radius) {
+        int[] probes = new int[BUCKETS];
+        int count = 0;
+        for (int mask = 0; mask < BUCKETS; mask++) {
+            if (Integer.bitCount(mask) <= radius) {
+                probes[count++] = mask;
+            }
+        }
+        return Arrays.copyOf(probes, count);
+    }
+
+    /**
+     * 匹配到的图片
+     * @param key 描述缓存键
+     * @param distance 感知哈希的汉明距离
+     */
+    public record Match(String key, int distance) {
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.imageai.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * 两层缓存：内存层（Caffeine，按字节数和TTL淘汰）+ 可选的磁盘层（重启后仍可命中）
+ * 键必须是可以直接用作文件名的字符串（如内容哈希）
+ */
+@Slf4j
+public class TieredCache {
+
+    private final String name;
+
+    private final Cache<String, byte[]> memory;
+
+    /**
+     * 磁盘层目录，为null时不启用磁盘层
+     */
+    private final Path diskDir;
+
+    private final long diskMaxBytes;
+
+    private final long ttlMillis;
+
+    private final AtomicLong diskBytes = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder diskHits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    public TieredCache(String name, long maxBytes, Duration ttl, Path diskRoot, long diskMaxBytes) {
+        this.name = name;
+        this.ttlMillis = ttl.toMillis();
+        this.diskMaxBytes = diskMaxBytes;
+        this.memory = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, byte[] value) -> key.length() + value.length)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.diskDir = diskRoot == null ? null : diskRoot.resolve(name);
+        if (diskDir != null) {
+            initDisk();
+        }
+    }
+
+    /**
+     * 读取缓存，内存未命中时再查磁盘层（磁盘IO在boundedElastic线程上执行）
+     * @param key 键
+     * @return 缓存值，未命中时为空
+     */
+    public Mono<byte[]> get(String key) {
+        return Mono.defer(() -> {
+            byte[] value = memory.getIfPresent(key);
+            if (value != null) {
+                hits.increment();
+                return Mono.just(value);
+            }
+            if (diskDir == null) {
+                misses.increment();
+                return Mono.empty();
+            }
+            return Mono.fromCallable(() -> readFromDisk(key))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .doOnNext(diskValue -> {
+                        diskHits.increment();
+                        memory.put(key, diskValue);
+                    })
+                    .switchIfEmpty(Mono.fromRunnable(misses::increment));
+        });
+    }
+
+    /**
+     * 写入缓存，磁盘层异步写入
+     * @param key 键
+     * @param value 值
+     */
+    public void put(String key, byte[] value) {
+        memory.put(key, value);
+        if (diskDir != null) {
+            Schedulers.boundedElastic().schedule(() -> writeToDisk(key, value));
+        }
+    }
+
+    public TieredCacheStats stats() {
+        long hitCount = hits.sum();
+        long diskHitCount = diskHits.sum();
+        long missCount = misses.sum();
+        long requests = hitCount + diskHitCount + missCount;
+        return new TieredCacheStats(
+                name,
+                memory.estimatedSize(),
+                memory.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L),
+                diskBytes.get(),
+                hitCount,
+                diskHitCount,
+                missCount,
+                requests == 0 ? 0.0 : (double) (hitCount + diskHitCount) / requests,
+                memory.stats().evictionCount());
+    }
+
+    private void initDisk() {
+        try {
+            Files.createDirectories(diskDir);
+            try (Stream<Path> files = Files.walk(diskDir)) {
+                files.filter(Files::isRegularFile).forEach(file -> {
+                    try {
+                        if (isExpired(file)) {
+                            Files.deleteIfExists(file);
+                        } else {
+                            diskBytes.addAndGet(Files.size(file));
+                        }
+                    } catch (IOException e) {
+                        log.warn("清理缓存文件失败: {}", file, e);
+                    }
+                });
+            }
+            log.info("缓存[{}]磁盘层已启用: {}, 已有数据: {} bytes", name, diskDir, diskBytes.get());
+        } catch (IOException e) {
+            throw new UncheckedIOException("初始化缓存磁盘目录失败: " + diskDir, e);
+        }
+    }
+
+    private byte[] readFromDisk(String key) throws IOException {
+        Path file = fileFor(key);
+        try {
+            if (isExpired(file)) {
+                long size = Files.size(file);
+                if (Files.deleteIfExists(file)) {
+                    diskBytes.addAndGet(-size);
+                }
+                return null;
+            }
+            return Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, byte[] value) {
+        Path file = fileFor(key);
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), key, ".tmp");
+            Files.write(tmp, value);
+            long previous = Files.exists(file) ? Files.size(file) : 0;
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (diskBytes.addAndGet(value.length - previous) > diskMaxBytes) {
+                evictDisk();
+            }
+        } catch (IOException e) {
+            log.warn("缓存[{}]写入磁盘失败: {}", name, key, e);
+        }
+    }
+
+    /**
+     * 磁盘层超出容量时，按写入时间从旧到新删除，直到降到容量的90%
+     */
+    private synchronized void evictDisk() {
+        if (diskBytes.get() <= diskMaxBytes) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(diskDir)) {
+            List<Path> oldestFirst = files.filter(Files::isRegularFile)
+                    .sorted(Comparator.comparingLong(TieredCache::lastModified))
+                    .toList();
+            long target = diskMaxBytes * 9 / 10;
+            for (Path file : oldestFirst) {
+                if (diskBytes.get() <= target) {
+                    break;
+                }
+                long size = Files.size(file);
+                if (Files.deleteIfExists(file)) {
+                    diskBytes.addAndGet(-size);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("缓存[{}]磁盘淘汰失败", name, e);
+        }
+    }
+
+    private boolean isExpired(Path file) throws IOException {
+        return System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis() > ttlMillis;
+    }
+
+    private Path fileFor(String key) {
+        // 按键前两位分目录，避免单目录文件过多
+        return diskDir.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.imageai.cache;
+
+/**
+ * 分层缓存的统计信息
+ * @param name 缓存名称
+ * @param entries 内存层条目数
+ * @param memoryBytes 内存层占用字节数
+ * @param diskBytes 磁盘层占用字节数
+ * @param hits 内存层命中次数
+ * @param diskHits 磁盘层命中次数
+ * @param misses 未命中次数
+ * @param hitRate 总命中率
+ * @param evictions 内存层淘汰次数
+ */
+public record TieredCacheStats(String name,
+                               long entries,
+                               long memoryBytes,
+                               long diskBytes,
+                               long hits,
+                               long diskHits,
+                               long misses,
+                               double hitRate,
+                               long evictions) {
+}
@@ -0,0 +1,62 @@
+package com.example.imageai.config;
+
+import org.springframework.stereotype.Component;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.SocketAddress;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 上游连接池指标
+ * Reactor Netty为每个远端地址创建连接池时回调注册，这里保存下来供统计接口查询
+ */
+@Component
+public class ConnectionPoolStats implements ConnectionProvider.MeterRegistrar {
+
+    private final Map<String, ConnectionPoolMetrics> pools = new ConcurrentHashMap<>();
+
+    @Override
+    public void registerMetrics(String poolName, String id, SocketAddress remoteAddress, ConnectionPoolMetrics metrics) {
+        pools.put(key(poolName, remoteAddress), metrics);
+    }
+
+    @Override
+    public void deRegisterMetrics(String poolName, String id, SocketAddress remoteAddress) {
+        pools.remove(key(poolName, remoteAddress));
+    }
+
+    /**
+     * 各连接池当前的连接数
+     */
+    public List<Snapshot> snapshot() {
+        return pools.entrySet().stream()
+                .map(e -> new Snapshot(e.getKey(),
+                        e.getValue().acquiredSize(),
+                        e.getValue().idleSize(),
+                        e.getValue().pendingAcquireSize(),
+                        e.getValue().allocatedSize(),
+                        e.getValue().maxAllocatedSize()))
+                .sorted(Comparator.comparing(Snapshot::pool))
+                .toList();
+    }
+
+    private static String key(String poolName, SocketAddress remoteAddress) {
+        return poolName + "/" + remoteAddress;
+    }
+
+    /**
+     * 连接池快照
+     * @param pool 连接池名称/远端地址
+     * @param active 使用中的连接数
+     * @param idle 空闲连接数
+     * @param pending 等待获取连接的请求数
+     * @param allocated 已建立的连接总数
+     * @param max 最大连接数
+     */
+    public record Snapshot(String pool, int active, int idle, int pending, int allocated, int max) {
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.imageai.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Executors;
+
+/**
+ * 分析任务执行配置
+ */
+@Configuration
+public class ExecutionConfig {
+
+    /**
+     * 基于虚拟线程的Reactor调度器，每个分析任务一个虚拟线程
+     * 执行器不单独注册为Bean，避免替换掉SpringBoot默认的applicationTaskExecutor
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler analysisScheduler() {
+        return Schedulers.fromExecutorService(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("analysis-vt-", 0).factory()),
+                "analysis-vt");
+    }
+}
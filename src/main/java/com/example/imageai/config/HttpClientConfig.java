@@ -0,0 +1,179 @@
+package com.example.imageai.config;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.ObservationRegistry;
+import io.netty.channel.ChannelOption;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ClientRequestObservationContext;
+import org.springframework.web.reactive.function.client.DefaultClientRequestObservationConvention;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.transport.AddressUtils;
+
+import java.net.SocketAddress;
+import java.time.Duration;
+
+/**
+ * 上游HTTP客户端配置
+ * 通义千问、阿里云TTS和图片下载共用一个按远端地址划分的连接池，
+ * 各自的WebClient只在超时和编解码上限上有所区别。
+ * WebClient接入ObservationRegistry，每次调用生成http.client.requests指标和span，并向上游传递traceparent
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class HttpClientConfig {
+
+    /**
+     * 固定地址的上游：uri标签取请求的URI模板
+     */
+    private static final DefaultClientRequestObservationConvention URI_TEMPLATE =
+            new DefaultClientRequestObservationConvention();
+
+    /**
+     * 地址由用户传入的上游（图片下载、任务回调）：uri标签固定为none，避免每个URL生成一组指标；
+     * 完整URL仍作为高基数属性记录在span上
+     */
+    private static final DefaultClientRequestObservationConvention URI_NONE =
+            new DefaultClientRequestObservationConvention() {
+                @Override
+                protected KeyValue uri(ClientRequestObservationContext context) {
+                    return KeyValue.of("uri", "none");
+                }
+            };
+
+    @Value("${http.client.connect-timeout:5s}")
+    private Duration connectTimeout;
+
+    @Value("${http.client.http2:true}")
+    private boolean http2;
+
+    @Value("${http.pool.max-pending:1000}")
+    private int maxPending;
+
+    @Value("${http.pool.pending-acquire-timeout:10s}")
+    private Duration pendingAcquireTimeout;
+
+    @Value("${http.pool.max-idle-time:60s}")
+    private Duration maxIdleTime;
+
+    @Value("${http.pool.max-life-time:10m}")
+    private Duration maxLifeTime;
+
+    private final ConnectionPoolStats connectionPoolStats;
+
+    private final ObservationRegistry observationRegistry;
+
+    /**
+     * 共享连接池，每个远端地址一个子池
+     * 通义千问和TTS网关使用单独的连接上限，其他地址（图片下载）使用默认上限
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider upstreamConnectionProvider(
+            @Value("${http.pool.max-connections:100}") int maxConnections,
+            @Value("${qianwen.api.url:https://dashscope.aliyuncs.com/compatible-mode/v1/chat/completions}") String qianWenUrl,
+            @Value("${qianwen.max-connections:64}") int qianWenMaxConnections,
+            @Value("${ali.tts.api.url:https://nls-gateway-cn-shanghai.aliyuncs.com/stream/v1/tts}") String ttsUrl,
+            @Value("${ali.tts.max-connections:64}") int ttsMaxConnections) {
+        ConnectionProvider.Builder builder = applyPoolSettings(ConnectionProvider.builder("upstream"), maxConnections);
+        // 远端地址专属的配置不会继承默认配置，需要完整设置一遍
+        return builder
+                .forRemoteHost(remoteAddress(qianWenUrl), spec -> applyPoolSettings(spec, qianWenMaxConnections))
+                .forRemoteHost(remoteAddress(ttsUrl), spec -> applyPoolSettings(spec, ttsMaxConnections))
+                .build();
+    }
+
+    private <S extends ConnectionProvider.ConnectionPoolSpec<S>> S applyPoolSettings(S spec, int maxConnections) {
+        return spec.maxConnections(maxConnections)
+                .pendingAcquireMaxCount(maxPending)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(Duration.ofSeconds(30))
+                .lifo()
+                .metrics(true, () -> connectionPoolStats);
+    }
+
+    /**
+     * 基础HttpClient：共享连接池、连接超时、keep-alive
+     */
+    @Bean
+    public HttpClient upstreamHttpClient(ConnectionProvider upstreamConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(upstreamConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .keepAlive(true);
+        if (http2) {
+            // 通过ALPN协商，上游不支持HTTP/2时自动回落到HTTP/1.1
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+        return httpClient;
+    }
+
+    /**
+     * 通义千问客户端不设置客户端级别的读取超时：非流式调用在生成结束前不返回任何字节，
+     * 读取超时会先于调用方60s的整体timeout触发；流式调用在请求上单独设置qianwen.stream.read-timeout
+     */
+    @Bean
+    public WebClient qianWenWebClient(HttpClient upstreamHttpClient,
+                                      @Value("${qianwen.api.url:https://dashscope.aliyuncs.com/compatible-mode/v1/chat/completions}") String apiUrl) {
+        return buildWebClient(upstreamHttpClient, apiUrl, null, 50 * 1024 * 1024, URI_TEMPLATE); // 50MB
+    }
+
+    @Bean
+    public WebClient ttsWebClient(HttpClient upstreamHttpClient,
+                                  @Value("${ali.tts.api.url:https://nls-gateway-cn-shanghai.aliyuncs.com/stream/v1/tts}") String apiUrl,
+                                  @Value("${ali.tts.read-timeout:15s}") Duration readTimeout) {
+        return buildWebClient(upstreamHttpClient, apiUrl, readTimeout, 50 * 1024 * 1024, URI_TEMPLATE); // 50MB
+    }
+
+    @Bean
+    public WebClient imageDownloadWebClient(HttpClient upstreamHttpClient,
+                                            @Value("${image.download.read-timeout:15s}") Duration readTimeout) {
+        return buildWebClient(upstreamHttpClient, null, readTimeout, 10 * 1024 * 1024, URI_NONE); // 10MB
+    }
+
+    @Bean
+    public WebClient jobCallbackWebClient(HttpClient upstreamHttpClient,
+                                          @Value("${job.callback.read-timeout:10s}") Duration readTimeout) {
+        return buildWebClient(upstreamHttpClient, null, readTimeout, 1024 * 1024, URI_NONE); // 1MB
+    }
+
+    /**
+     * 构建WebClient
+     * @param httpClient 基础HttpClient
+     * @param url 上游地址，非https时不启用HTTP/2（明文HTTP/2需要额外的h2c升级）
+     * @param readTimeout 响应读取超时（两次读之间的最长间隔），与调用方的整体timeout相互独立；为null时不设置
+     * @param maxInMemorySize 编解码的内存上限
+     * @param observationConvention 指标和span的命名规则
+     */
+    private WebClient buildWebClient(HttpClient httpClient, String url, Duration readTimeout, int maxInMemorySize,
+                                     DefaultClientRequestObservationConvention observationConvention) {
+        HttpClient client = readTimeout != null ? httpClient.responseTimeout(readTimeout) : httpClient;
+        if (url != null && !url.startsWith("https")) {
+            client = client.protocol(HttpProtocol.HTTP11);
+        }
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(client))
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(maxInMemorySize))
+                .observationRegistry(observationRegistry)
+                .observationConvention(observationConvention)
+                .build();
+    }
+
+    private static SocketAddress remoteAddress(String url) {
+        UriComponents uri = UriComponentsBuilder.fromHttpUrl(url).build();
+        int port = uri.getPort() != -1 ? uri.getPort() : ("https".equals(uri.getScheme()) ? 443 : 80);
+        // 与Reactor Netty内部一致：IP字面量直接解析，域名保持未解析，这样才能匹配到对应的子池
+        return AddressUtils.createUnresolved(uri.getHost(), port);
+    }
+}
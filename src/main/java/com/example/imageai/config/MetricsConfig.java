@@ -0,0 +1,24 @@
+package com.example.imageai.config;
+
+import com.example.imageai.metrics.AnalysisMetrics;
+import com.example.imageai.metrics.TimedJacksonHttpMessageConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+/**
+ * 指标配置
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * 替换SpringBoot默认的JSON转换器，统计响应序列化耗时和大小
+     */
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper,
+                                                                                   AnalysisMetrics metrics) {
+        return new TimedJacksonHttpMessageConverter(objectMapper, metrics);
+    }
+}
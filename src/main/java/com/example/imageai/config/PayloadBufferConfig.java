@@ -0,0 +1,22 @@
+package com.example.imageai.config;
+
+import io.netty.util.ResourceLeakDetector;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 池化缓冲区配置
+ * 图片等大块数据放在Netty的池化直接内存中（见PooledBuffers），没有release的缓冲区不会被GC回收到池里。
+ * 泄漏检测级别：disabled、simple（默认，抽样检测，开销可忽略）、advanced（抽样并记录访问位置）、
+ * paranoid（检测每个缓冲区，只用于测试和压测）。检测到泄漏时Netty输出以"LEAK:"开头的ERROR日志
+ */
+@Slf4j
+@Configuration
+public class PayloadBufferConfig {
+
+    public PayloadBufferConfig(@Value("${payload.leak-detection:simple}") ResourceLeakDetector.Level level) {
+        ResourceLeakDetector.setLevel(level);
+        log.info("池化缓冲区泄漏检测级别: {}", level);
+    }
+}
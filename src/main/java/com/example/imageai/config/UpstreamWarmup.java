@@ -0,0 +1,73 @@
+package com.example.imageai.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+/**
+ * 启动预热
+ * 应用就绪后预先初始化事件循环和DNS解析器，并向通义千问和TTS网关各建立若干连接，
+ * 让TLS握手发生在启动阶段而不是第一批用户请求上
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UpstreamWarmup {
+
+    private final HttpClient upstreamHttpClient;
+
+    @Qualifier("qianWenWebClient")
+    private final WebClient qianWenWebClient;
+
+    @Qualifier("ttsWebClient")
+    private final WebClient ttsWebClient;
+
+    @Value("${qianwen.api.url:https://dashscope.aliyuncs.com/compatible-mode/v1/chat/completions}")
+    private String qianWenUrl;
+
+    @Value("${ali.tts.api.url:https://nls-gateway-cn-shanghai.aliyuncs.com/stream/v1/tts}")
+    private String ttsUrl;
+
+    @Value("${http.client.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${http.client.warmup.connections:2}")
+    private int connections;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmup() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        upstreamHttpClient.warmup()
+                .thenMany(Flux.merge(preconnect(qianWenWebClient, qianWenUrl), preconnect(ttsWebClient, ttsUrl)))
+                .doOnComplete(() -> log.info("上游连接预热完成，耗时: {} ms", System.currentTimeMillis() - start))
+                .subscribe();
+    }
+
+    /**
+     * 向上游根路径并发发送HEAD请求，建立的连接在响应后归还到连接池
+     * 任何HTTP状态码都说明连接已建立，只有网络错误才记录警告
+     */
+    private Flux<Integer> preconnect(WebClient webClient, String url) {
+        String origin = UriComponentsBuilder.fromHttpUrl(url).replacePath("/").replaceQuery(null).toUriString();
+        return Flux.range(0, connections)
+                .flatMap(i -> webClient.head()
+                        .uri(origin)
+                        .exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode().value()))
+                        .onErrorResume(e -> {
+                            log.warn("上游连接预热失败: {}, {}", origin, e.getMessage());
+                            return Mono.empty();
+                        }));
+    }
+}
@@ -1,14 +1,43 @@
 package com.example.imageai.controller;
 
+import com.example.imageai.audio.AudioStore;
+import com.example.imageai.audio.VoiceSelector;
+import com.example.imageai.cache.AnalysisCache;
+import com.example.imageai.cache.TieredCacheStats;
+import com.example.imageai.config.ConnectionPoolStats;
+import com.example.imageai.dto.AudioFormat;
+import com.example.imageai.dto.ImageAnalysisBatchItem;
+import com.example.imageai.dto.ImageAnalysisBatchRequest;
 import com.example.imageai.dto.ImageAnalysisRequest;
 import com.example.imageai.dto.ImageAnalysisResponse;
+import com.example.imageai.limit.UpstreamLimitStats;
+import com.example.imageai.limit.UpstreamLimiter;
+import com.example.imageai.limit.UpstreamThrottledException;
+import com.example.imageai.resilience.ResilienceStats;
+import com.example.imageai.resilience.UpstreamResilience;
+import com.example.imageai.resilience.UpstreamUnavailableException;
 import com.example.imageai.service.ImageAnalysisService;
+import com.example.imageai.service.UpstreamFailedException;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
 
 @Slf4j
 @RestController
@@ -17,35 +46,258 @@ import org.springframework.web.bind.annotation.*;
 @CrossOrigin(origins = "*")
 public class ImageAnalysisController {
 
+    /**
+     * 客户端标识请求头，CLIENT音色策略下按此选择音色，未提供时使用客户端地址
+     */
+    private static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+    /**
+     * Tomcat的sendfile请求属性，与DefaultServlet发送静态文件的方式相同
+     */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     private final ImageAnalysisService imageAnalysisService;
+    private final AudioStore audioStore;
+    private final AnalysisCache analysisCache;
+    private final ConnectionPoolStats connectionPoolStats;
+    private final UpstreamLimiter upstreamLimiter;
+    private final UpstreamResilience upstreamResilience;
+    private final VoiceSelector voiceSelector;
 
     /**
      * 分析图片并生成语音
+     * 返回Mono，非PLATFORM执行模式下Servlet线程在等待上游模型和TTS期间被释放；
+     * 上游限流时返回429，上游熔断时返回503，均带有Retry-After；超过分析期限（image.analysis.timeout）时返回504
      * @param request 包含图片URL的请求
      * @return 包含图片描述和语音数据的响应
      */
     @PostMapping(value = "/analyze", 
                  consumes = MediaType.APPLICATION_JSON_VALUE,
                  produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<ImageAnalysisResponse> analyzeImage(@Valid @RequestBody ImageAnalysisRequest request) {
-        try {
-            long start = System.currentTimeMillis();
-            log.info("开始分析图片: {}", request.getImageUrl());
-            ImageAnalysisResponse response = imageAnalysisService.analyzeImageAndGenerateVoice(request.getImageUrl());
-            log.info("图片分析完成，描述长度: {}", response.getDescription().length());
-            long end = System.currentTimeMillis();
-            System.out.println("---------【Time Cost】---------：: " + (end - start));
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            log.error("图片分析失败: ", e);
-            return ResponseEntity.internalServerError()
-                    .body(ImageAnalysisResponse.builder()
-                            .success(false)
-                            .error("图片分析失败: " + e.getMessage())
+    public Mono<ResponseEntity<ImageAnalysisResponse>> analyzeImage(@Valid @RequestBody ImageAnalysisRequest request,
+                                                                    @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                                    @RequestHeader(value = CLIENT_ID_HEADER, required = false) String clientId,
+                                                                    HttpServletRequest servletRequest) {
+        log.info("开始分析图片: {}", request.getImageUrl());
+        return imageAnalysisService.analyze(request.getImageUrl(), request.getResponseMode(),
+                        resolveAudioFormat(request.getAudioFormat(), accept),
+                        resolveVoice(request.getVoice(), clientId, servletRequest))
+                .map(response -> {
+                    log.info("图片分析完成，描述长度: {}", response.getDescription().length());
+                    return ResponseEntity.ok(response);
+                })
+                .onErrorResume(e -> {
+                    UpstreamThrottledException throttled = UpstreamThrottledException.find(e).orElse(null);
+                    if (throttled != null) {
+                        log.warn("图片分析被限流: {}", throttled.getMessage());
+                        return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                                .header(HttpHeaders.RETRY_AFTER, String.valueOf(throttled.getRetryAfter().toSeconds()))
+                                .body(ImageAnalysisResponse.builder()
+                                        .success(false)
+                                        .error("上游服务繁忙，请稍后重试")
+                                        .build()));
+                    }
+                    UpstreamUnavailableException unavailable = UpstreamUnavailableException.find(e).orElse(null);
+                    if (unavailable != null) {
+                        log.warn("图片分析被熔断: {}", unavailable.getMessage());
+                        return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, unavailable.getRetryAfter().toSeconds())))
+                                .body(ImageAnalysisResponse.builder()
+                                        .success(false)
+                                        .error("上游服务暂时不可用，请稍后重试")
+                                        .build()));
+                    }
+                    if (isTimeout(e)) {
+                        log.warn("图片分析超时: {}", request.getImageUrl());
+                        return Mono.just(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                                .body(ImageAnalysisResponse.builder()
+                                        .success(false)
+                                        .error("图片分析超时，请稍后重试")
+                                        .build()));
+                    }
+                    UpstreamFailedException failed = UpstreamFailedException.find(e).orElse(null);
+                    if (failed != null) {
+                        log.error("图片分析上游调用失败: ", e);
+                        return Mono.just(ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+                                .body(ImageAnalysisResponse.builder()
+                                        .success(false)
+                                        .error(failed.getMessage())
+                                        .build()));
+                    }
+                    log.error("图片分析失败: ", e);
+                    return Mono.just(ResponseEntity.internalServerError()
+                            .body(ImageAnalysisResponse.builder()
+                                    .success(false)
+                                    .error("图片分析失败: " + e.getMessage())
+                                    .build()));
+                });
+    }
+
+    /**
+     * 流式分析图片并生成语音（SSE）
+     * 每生成一句语音推送一个chunk事件，全部完成后推送done事件
+     * @param request 包含图片URL的请求
+     * @return 语音片段事件流
+     */
+    @PostMapping(value = "/analyze/stream",
+                 consumes = MediaType.APPLICATION_JSON_VALUE,
+                 produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> analyzeImageStream(@Valid @RequestBody ImageAnalysisRequest request,
+                                                            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                            @RequestHeader(value = CLIENT_ID_HEADER, required = false) String clientId,
+                                                            HttpServletRequest servletRequest) {
+        log.info("开始流式分析图片: {}", request.getImageUrl());
+        return imageAnalysisService.analyzeImageAndGenerateVoiceStream(request.getImageUrl(), request.getResponseMode(),
+                        resolveAudioFormat(request.getAudioFormat(), accept),
+                        resolveVoice(request.getVoice(), clientId, servletRequest))
+                .map(chunk -> ServerSentEvent.<Object>builder(chunk)
+                        .id(String.valueOf(chunk.getIndex()))
+                        .event("chunk")
+                        .build())
+                .concatWith(Mono.fromSupplier(() -> ServerSentEvent.<Object>builder("").event("done").build()))
+                .onErrorResume(e -> {
+                    log.error("流式图片分析失败: ", e);
+                    return Mono.just(ServerSentEvent.<Object>builder(ImageAnalysisResponse.builder()
+                                    .success(false)
+                                    .error("图片分析失败: " + e.getMessage())
+                                    .build())
+                            .event("error")
                             .build());
+                });
+    }
+
+    /**
+     * 批量分析图片并生成语音（NDJSON）
+     * 每张图片完成后立即输出一行结果，单张失败不影响其他图片
+     * @param request 包含图片URL列表的请求
+     * @return 按完成顺序输出的每张图片的结果
+     */
+    @PostMapping(value = "/analyze/batch",
+                 consumes = MediaType.APPLICATION_JSON_VALUE,
+                 produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ImageAnalysisBatchItem> analyzeImageBatch(@Valid @RequestBody ImageAnalysisBatchRequest request,
+                                                          @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                          @RequestHeader(value = CLIENT_ID_HEADER, required = false) String clientId,
+                                                          HttpServletRequest servletRequest) {
+        return imageAnalysisService.analyzeBatch(request.getImageUrls(), request.getResponseMode(),
+                resolveAudioFormat(request.getAudioFormat(), accept),
+                resolveVoice(request.getVoice(), clientId, servletRequest));
+    }
+
+    /**
+     * 获取二进制语音数据（REFERENCE模式）
+     * 直接输出存储的语音字节，不做Base64编码，支持Range请求。
+     * 语音保存在映射文件中且请求整个文件时，交给Tomcat以sendfile（FileChannel.transferTo）
+     * 从分段文件直接发送到socket，数据不经过Java堆
+     * @param id 语音ID
+     * @return 语音数据
+     */
+    @GetMapping("/audio/{id}")
+    public ResponseEntity<Resource> getAudio(@PathVariable String id,
+                                             @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                                             HttpServletRequest servletRequest) {
+        return audioStore.get(id)
+                .map(audio -> {
+                    ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                            .contentType(audioMediaType(audio.format()))
+                            .cacheControl(CacheControl.maxAge(Duration.ofHours(1)).cachePrivate().immutable());
+                    if (range == null && audio.file() != null
+                            && Boolean.TRUE.equals(servletRequest.getAttribute(SENDFILE_SUPPORT))) {
+                        servletRequest.setAttribute(SENDFILE_FILENAME, audio.file().toAbsolutePath().toString());
+                        servletRequest.setAttribute(SENDFILE_START, audio.offset());
+                        servletRequest.setAttribute(SENDFILE_END, audio.offset() + audio.length());
+                        return builder.contentLength(audio.length())
+                                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                                .<Resource>build();
+                    }
+                    return builder.body(audio.content());
+                })
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private static MediaType audioMediaType(String format) {
+        try {
+            return AudioFormat.from(format).mediaType();
+        } catch (IllegalArgumentException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
         }
     }
 
+    /**
+     * 确定语音格式：请求体中指定的优先，其次按Accept请求头协商（如 Accept: application/json, audio/mpeg），默认wav
+     * Accept中只列出了不支持的音频类型时返回406
+     */
+    private static AudioFormat resolveAudioFormat(AudioFormat requested, String accept) {
+        if (requested != null) {
+            return requested;
+        }
+        AudioFormat negotiated;
+        try {
+            negotiated = AudioFormat.fromAccept(accept);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_ACCEPTABLE, e.getMessage());
+        }
+        return negotiated != null ? negotiated : AudioFormat.WAV;
+    }
+
+    /**
+     * 是否因超过分析期限而失败
+     */
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 确定音色：请求体中指定的优先，其次按音色策略和客户端标识选择；为null时按描述文本选择
+     */
+    private String resolveVoice(String requested, String clientId, HttpServletRequest servletRequest) {
+        String client = StringUtils.hasText(clientId) ? clientId : servletRequest.getRemoteAddr();
+        return voiceSelector.forRequest(requested, client);
+    }
+
+    /**
+     * 分析结果缓存统计
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<List<TieredCacheStats>> cacheStats() {
+        return ResponseEntity.ok(analysisCache.stats());
+    }
+
+    /**
+     * 上游连接池统计
+     */
+    @GetMapping("/http/stats")
+    public ResponseEntity<List<ConnectionPoolStats.Snapshot>> httpStats() {
+        return ResponseEntity.ok(connectionPoolStats.snapshot());
+    }
+
+    /**
+     * 上游限流统计
+     */
+    @GetMapping("/limit/stats")
+    public ResponseEntity<List<UpstreamLimitStats>> limitStats() {
+        return ResponseEntity.ok(upstreamLimiter.stats());
+    }
+
+    /**
+     * 上游容错统计（熔断器状态、重试和对冲次数）
+     */
+    @GetMapping("/resilience/stats")
+    public ResponseEntity<List<ResilienceStats>> resilienceStats() {
+        return ResponseEntity.ok(upstreamResilience.stats());
+    }
+
     /**
      * 健康检查接口
      */
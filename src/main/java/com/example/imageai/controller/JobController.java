@@ -0,0 +1,72 @@
+package com.example.imageai.controller;
+
+import com.example.imageai.dto.JobSubmitRequest;
+import com.example.imageai.job.Job;
+import com.example.imageai.job.JobService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.net.URI;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/jobs")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class JobController {
+
+    /**
+     * 提交方标识请求头，未提供时使用客户端地址
+     */
+    private static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+    private final JobService jobService;
+
+    /**
+     * 提交批量分析任务
+     * 立即返回任务ID，通过查询接口或回调获取结果；回调地址的主机不在允许列表中时返回400，队列已满时返回503
+     * @param request 任务请求
+     * @return 已入队的任务
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE,
+                 produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Job> submit(@Valid @RequestBody JobSubmitRequest request,
+                                      @RequestHeader(value = CLIENT_ID_HEADER, required = false) String clientId,
+                                      HttpServletRequest servletRequest) {
+        if (request.getCallbackUrl() != null && !jobService.isCallbackAllowed(request.getCallbackUrl())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "回调地址的主机不在允许列表中");
+        }
+        String client = StringUtils.hasText(clientId) ? clientId : servletRequest.getRemoteAddr();
+        return jobService.submit(request, client)
+                .map(job -> ResponseEntity.accepted()
+                        .location(URI.create("/api/v1/jobs/" + job.getId()))
+                        .body(job))
+                .orElseGet(() -> {
+                    log.warn("任务队列已满，拒绝提交方: {}", client);
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .header(HttpHeaders.RETRY_AFTER, "30")
+                            .build();
+                });
+    }
+
+    /**
+     * 查询任务状态和结果
+     * @param id 任务ID
+     * @return 任务详情
+     */
+    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Job> get(@PathVariable String id) {
+        return jobService.get(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
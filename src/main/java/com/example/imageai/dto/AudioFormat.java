@@ -0,0 +1,127 @@
+package com.example.imageai.dto;
+
+import com.example.imageai.audio.AudioSniffer;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 语音格式
+ * 阿里云TTS的RESTful接口只支持pcm/wav/mp3。opus/ogg/webm等其他格式直接拒绝，
+ * 不以mp3冒充：按Content-Type或扩展名解码的客户端拿到mp3数据会播放失败
+ */
+public enum AudioFormat {
+
+    /**
+     * 16kHz 16位单声道PCM，兼容性最好
+     */
+    WAV("wav", MediaType.parseMediaType("audio/wav")),
+
+    /**
+     * 压缩格式，适合移动端和慢速网络
+     */
+    MP3("mp3", MediaType.parseMediaType("audio/mpeg"));
+
+    private final String value;
+
+    private final MediaType mediaType;
+
+    AudioFormat(String value, MediaType mediaType) {
+        this.value = value;
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * 格式名，即TTS请求中的format参数和文件扩展名
+     */
+    @JsonValue
+    public String value() {
+        return value;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    /**
+     * 按格式名解析，不区分大小写
+     * 请求体中的不支持的格式由Jackson包装为消息不可读，返回400
+     * @param value 格式名，如 wav、mp3
+     * @return 对应的格式
+     * @throws IllegalArgumentException 不支持的格式
+     */
+    @JsonCreator
+    public static AudioFormat from(String value) {
+        return switch (value.trim().toLowerCase()) {
+            case "wav", "wave" -> WAV;
+            case "mp3", "mpeg" -> MP3;
+            default -> throw new IllegalArgumentException("不支持的语音格式: " + value + "，仅支持wav和mp3");
+        };
+    }
+
+    /**
+     * 按Accept请求头协商语音格式
+     * 按q值从高到低取第一个支持的audio类型，不支持的audio类型（如audio/ogg）和application/json等非音频类型跳过。
+     * 没有支持的具体类型时，通配的audio类型或任意类型表示任意音频格式都可接受，由调用方使用默认格式
+     * @param accept Accept请求头
+     * @return 协商出的格式，Accept中没有音频类型或接受任意音频格式时返回null
+     * @throws IllegalArgumentException Accept中列出的音频类型都不支持
+     */
+    public static AudioFormat fromAccept(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return null;
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+        // 稳定排序，q值相同时保持客户端给出的顺序
+        mediaTypes.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        boolean anyAudio = false;
+        List<String> unsupported = new ArrayList<>();
+        for (MediaType mediaType : mediaTypes) {
+            if (mediaType.getQualityValue() == 0) {
+                continue;
+            }
+            if (mediaType.isWildcardType() || "audio".equals(mediaType.getType()) && mediaType.isWildcardSubtype()) {
+                anyAudio = true;
+                continue;
+            }
+            if (!"audio".equals(mediaType.getType())) {
+                continue;
+            }
+            switch (mediaType.getSubtype()) {
+                case "wav", "x-wav", "wave", "vnd.wave":
+                    return WAV;
+                case "mpeg", "mp3":
+                    return MP3;
+                default:
+                    unsupported.add(mediaType.getType() + "/" + mediaType.getSubtype());
+                    break;
+            }
+        }
+        if (!anyAudio && !unsupported.isEmpty()) {
+            throw new IllegalArgumentException("不支持的语音格式: " + String.join(", ", unsupported) + "，仅支持audio/wav和audio/mpeg");
+        }
+        return null;
+    }
+
+    /**
+     * 按文件头识别实际的语音格式
+     * TTS失败降级为模拟音频时，实际格式可能与请求的格式不同
+     * @param data 语音数据
+     * @param fallback 无法识别时返回的格式
+     * @return 语音格式
+     */
+    public static AudioFormat detect(byte[] data, AudioFormat fallback) {
+        AudioFormat detected = AudioSniffer.format(data);
+        return detected != null ? detected : fallback;
+    }
+}
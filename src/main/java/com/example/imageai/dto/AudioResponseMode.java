@@ -0,0 +1,17 @@
+package com.example.imageai.dto;
+
+/**
+ * 语音数据的返回方式
+ */
+public enum AudioResponseMode {
+
+    /**
+     * 语音数据以Base64编码内嵌在JSON响应中
+     */
+    INLINE,
+
+    /**
+     * JSON响应只返回语音ID，语音数据通过 GET /api/v1/image/audio/{id} 以二进制获取
+     */
+    REFERENCE
+}
@@ -0,0 +1,30 @@
+package com.example.imageai.dto;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageAnalysisBatchItem {
+
+    /**
+     * 图片在请求列表中的序号（从0开始），结果按完成顺序输出
+     */
+    private long index;
+
+    /**
+     * 图片URL
+     */
+    private String imageUrl;
+
+    /**
+     * 本张图片的分析结果，失败时success为false并带有error
+     */
+    @JsonUnwrapped
+    private ImageAnalysisResponse result;
+}
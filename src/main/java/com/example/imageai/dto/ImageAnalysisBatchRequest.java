@@ -0,0 +1,34 @@
+package com.example.imageai.dto;
+
+import com.example.imageai.audio.VoiceSelector;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ImageAnalysisBatchRequest {
+
+    @NotEmpty(message = "图片URL列表不能为空")
+    @Size(max = 1000, message = "单次批量最多1000张图片")
+    private List<@NotBlank(message = "图片URL不能为空") String> imageUrls;
+
+    /**
+     * 语音数据的返回方式，默认INLINE（Base64内嵌）
+     */
+    private AudioResponseMode responseMode = AudioResponseMode.INLINE;
+
+    /**
+     * 语音格式（wav/mp3，其他格式返回400）；不指定时按Accept请求头协商，默认wav
+     */
+    private AudioFormat audioFormat;
+
+    /**
+     * 音色（如 xiaoyun、aicheng），不指定时按服务端配置的策略选择
+     */
+    @Pattern(regexp = VoiceSelector.VOICE_PATTERN, message = "不支持的音色")
+    private String voice;
+}
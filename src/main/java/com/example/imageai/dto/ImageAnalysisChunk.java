@@ -0,0 +1,39 @@
+package com.example.imageai.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ImageAnalysisChunk {
+
+    /**
+     * 句子序号（从0开始）
+     */
+    private long index;
+
+    /**
+     * 本句文本
+     */
+    private String text;
+
+    /**
+     * 本句语音数据，JSON中为Base64编码
+     */
+    private byte[] audioData;
+
+    /**
+     * 本句语音ID（REFERENCE模式）
+     */
+    private String audioId;
+
+    /**
+     * 本句语音下载地址（REFERENCE模式）
+     */
+    private String audioUrl;
+
+    /**
+     * 语音文件类型
+     */
+    private String audioFormat;
+}
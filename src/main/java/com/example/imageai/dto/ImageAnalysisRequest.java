@@ -1,5 +1,6 @@
 package com.example.imageai.dto;
 
+import com.example.imageai.audio.VoiceSelector;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
 import lombok.Data;
@@ -11,4 +12,20 @@ public class ImageAnalysisRequest {
 //    @Pattern(regexp = "^https?://.*\\.(jpg|jpeg|png|gif|bmp|webp)$",
 //             message = "请提供有效的图片URL")
     private String imageUrl;
-} 
\ No newline at end of file
+
+    /**
+     * 语音数据的返回方式，默认INLINE（Base64内嵌）
+     */
+    private AudioResponseMode responseMode = AudioResponseMode.INLINE;
+
+    /**
+     * 语音格式（wav/mp3，其他格式返回400）；不指定时按Accept请求头协商，默认wav
+     */
+    private AudioFormat audioFormat;
+
+    /**
+     * 音色（如 xiaoyun、aicheng），不指定时按服务端配置的策略选择
+     */
+    @Pattern(regexp = VoiceSelector.VOICE_PATTERN, message = "不支持的音色")
+    private String voice;
+}
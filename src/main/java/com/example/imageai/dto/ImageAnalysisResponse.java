@@ -1,11 +1,15 @@
 package com.example.imageai.dto;
 
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class ImageAnalysisResponse {
     
     /**
@@ -19,9 +23,25 @@ public class ImageAnalysisResponse {
     private String description;
     
     /**
-     * 语音数据（Base64编码）
+     * 语音数据，JSON中为Base64编码
+     * 序列化响应时按块编码直接写入输出缓冲区，不构建完整的Base64字符串
      */
-    private String audioData;
+    private byte[] audioData;
+    
+    /**
+     * 语音ID（REFERENCE模式），通过audioUrl以二进制获取语音数据
+     */
+    private String audioId;
+    
+    /**
+     * 语音下载地址（REFERENCE模式）
+     */
+    private String audioUrl;
+    
+    /**
+     * 语音数据大小（字节）
+     */
+    private long audioSize;
     
     /**
      * 语音文件类型
@@ -0,0 +1,43 @@
+package com.example.imageai.dto;
+
+import com.example.imageai.audio.VoiceSelector;
+import com.example.imageai.job.JobPriority;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class JobSubmitRequest {
+
+    @NotEmpty(message = "图片URL列表不能为空")
+    @Size(max = 10000, message = "单个任务最多10000张图片")
+    private List<@NotBlank(message = "图片URL不能为空") String> imageUrls;
+
+    /**
+     * 语音格式（wav/mp3，其他格式返回400），默认wav
+     */
+    private AudioFormat audioFormat = AudioFormat.WAV;
+
+    /**
+     * 任务优先级，默认NORMAL；显式传null返回400
+     */
+    @NotNull(message = "任务优先级不能为空")
+    private JobPriority priority = JobPriority.NORMAL;
+
+    /**
+     * 任务结束后回调的地址（可选），以POST方式发送任务详情；主机须在job.callback.allowed-hosts中
+     */
+    @Pattern(regexp = "^https?://.+", message = "请提供有效的回调URL")
+    private String callbackUrl;
+
+    /**
+     * 音色（如 xiaoyun、aicheng），不指定时按服务端配置的策略选择
+     */
+    @Pattern(regexp = VoiceSelector.VOICE_PATTERN, message = "不支持的音色")
+    private String voice;
+}
@@ -0,0 +1,41 @@
+package com.example.imageai.image;
+
+import com.example.imageai.util.PooledBuffers;
+import io.netty.buffer.ByteBuf;
+
+import java.io.InputStream;
+
+/**
+ * 下载的图片
+ * 图片数据在池化的直接内存中（见PooledBuffers），持有者用完后调用close释放
+ * @param data 图片数据，读取时不移动读索引
+ * @param format 图片格式
+ */
+public record DownloadedImage(ByteBuf data, ImageFormat format) implements AutoCloseable {
+
+    /**
+     * 图片大小（字节）
+     */
+    public int size() {
+        return data.readableBytes();
+    }
+
+    /**
+     * 读取图片数据的输入流
+     */
+    public InputStream inputStream() {
+        return PooledBuffers.inputStream(data);
+    }
+
+    /**
+     * 共用同一块数据的新引用，交给另一个线程使用时先retain，两者各自close
+     */
+    public DownloadedImage retain() {
+        return new DownloadedImage(data.retainedDuplicate(), format);
+    }
+
+    @Override
+    public void close() {
+        data.release();
+    }
+}
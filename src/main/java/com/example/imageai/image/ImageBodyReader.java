@@ -0,0 +1,50 @@
+package com.example.imageai.image;
+
+import com.example.imageai.util.PooledBuffers;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 把图片下载响应的数据块组装为图片
+ * 首个数据块即检查文件头魔数，非图片内容尽早拒绝；累计字节数超限立即中止。
+ * 各数据块合并为一个组合缓冲区，直接作为图片数据，不再复制到堆上
+ */
+public final class ImageBodyReader {
+
+    private ImageBodyReader() {
+    }
+
+    /**
+     * 读取图片
+     * @param body 响应体数据块
+     * @param maxBytes 图片大小上限
+     * @return 图片数据，由订阅方close
+     */
+    public static Mono<DownloadedImage> read(Flux<DataBuffer> body, int maxBytes) {
+        Flux<DataBuffer> checked = body
+                .switchOnFirst((first, buffers) -> {
+                    DataBuffer buffer = first.get();
+                    if (buffer != null && buffer.readableByteCount() >= ImageFormat.SNIFF_LENGTH
+                            && ImageFormat.detect(buffer) == null) {
+                        DataBufferUtils.release(buffer);
+                        return Flux.error(new RuntimeException("不是支持的图片格式"));
+                    }
+                    return buffers;
+                });
+
+        return DataBufferUtils.join(checked, maxBytes)
+                .onErrorMap(DataBufferLimitException.class,
+                        e -> new RuntimeException("图片大小超过限制: " + maxBytes + " bytes", e))
+                .map(joined -> {
+                    ImageFormat format = ImageFormat.detect(joined);
+                    if (format == null) {
+                        DataBufferUtils.release(joined);
+                        throw new RuntimeException("不是支持的图片格式");
+                    }
+                    return new DownloadedImage(PooledBuffers.from(joined), format);
+                });
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.imageai.image;
+
+import org.springframework.core.io.buffer.DataBuffer;
+
+/**
+ * 支持的图片格式，通过文件头魔数识别
+ */
+public enum ImageFormat {
+
+    JPEG("image/jpeg"),
+    PNG("image/png"),
+    GIF("image/gif"),
+    BMP("image/bmp"),
+    WEBP("image/webp");
+
+    /**
+     * 识别所有格式所需的最少字节数（WEBP需要12字节）
+     */
+    public static final int SNIFF_LENGTH = 12;
+
+    private final String mimeType;
+
+    ImageFormat(String mimeType) {
+        this.mimeType = mimeType;
+    }
+
+    public String mimeType() {
+        return mimeType;
+    }
+
+    /**
+     * 根据文件头识别图片格式
+     * @param data 文件开头的字节
+     * @return 图片格式，无法识别时返回null
+     */
+    public static ImageFormat detect(byte[] data) {
+        return detect(new ByteSource() {
+            @Override
+            public int length() {
+                return data.length;
+            }
+
+            @Override
+            public int get(int index) {
+                return data[index] & 0xFF;
+            }
+        });
+    }
+
+    /**
+     * 根据缓冲区开头识别图片格式，不移动读指针也不复制数据
+     * @param buffer 数据缓冲区
+     * @return 图片格式，无法识别时返回null
+     */
+    public static ImageFormat detect(DataBuffer buffer) {
+        int offset = buffer.readPosition();
+        return detect(new ByteSource() {
+            @Override
+            public int length() {
+                return buffer.readableByteCount();
+            }
+
+            @Override
+            public int get(int index) {
+                return buffer.getByte(offset + index) & 0xFF;
+            }
+        });
+    }
+
+    private static ImageFormat detect(ByteSource source) {
+        int length = source.length();
+        if (length >= 3 && source.get(0) == 0xFF && source.get(1) == 0xD8 && source.get(2) == 0xFF) {
+            return JPEG;
+        }
+        if (length >= 8 && source.get(0) == 0x89 && source.get(1) == 'P' && source.get(2) == 'N' && source.get(3) == 'G'
+                && source.get(4) == 0x0D && source.get(5) == 0x0A && source.get(6) == 0x1A && source.get(7) == 0x0A) {
+            return PNG;
+        }
+        if (length >= 4 && source.get(0) == 'G' && source.get(1) == 'I' && source.get(2) == 'F' && source.get(3) == '8') {
+            return GIF;
+        }
+        if (length >= 2 && source.get(0) == 'B' && source.get(1) == 'M') {
+            return BMP;
+        }
+        if (length >= 12 && source.get(0) == 'R' && source.get(1) == 'I' && source.get(2) == 'F' && source.get(3) == 'F'
+                && source.get(8) == 'W' && source.get(9) == 'E' && source.get(10) == 'B' && source.get(11) == 'P') {
+            return WEBP;
+        }
+        return null;
+    }
+
+    private interface ByteSource {
+
+        int length();
+
+        int get(int index);
+    }
+}
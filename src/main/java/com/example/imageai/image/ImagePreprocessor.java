@@ -0,0 +1,149 @@
+package com.example.imageai.image;
+
+import com.example.imageai.util.PooledBuffers;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * 图片预处理
+ * 上传给通义千问之前，把图片缩小到模型实际使用的分辨率并重新编码为JPEG。
+ * 解码时按缩放比例做源图子采样，不会在内存中构建全分辨率的像素数据；
+ * 原图从池化缓冲区读取，编码结果也写入池化缓冲区
+ */
+@Slf4j
+@Component
+public class ImagePreprocessor {
+
+    private final boolean enabled;
+
+    private final int maxDimension;
+
+    private final float jpegQuality;
+
+    private final int passThroughBytes;
+
+    public ImagePreprocessor(@Value("${image.preprocess.enabled:true}") boolean enabled,
+                             @Value("${image.preprocess.max-dimension:1280}") int maxDimension,
+                             @Value("${image.preprocess.jpeg-quality:0.85}") float jpegQuality,
+                             @Value("${image.preprocess.pass-through-bytes:262144}") int passThroughBytes) {
+        this.enabled = enabled;
+        this.maxDimension = maxDimension;
+        this.jpegQuality = jpegQuality;
+        this.passThroughBytes = passThroughBytes;
+        // 图片都在内存中，不使用磁盘临时文件做缓存
+        ImageIO.setUseCache(false);
+    }
+
+    /**
+     * 预处理图片
+     * 已经足够小的JPEG、JDK无法解码的格式（WEBP）以及处理失败的图片原样返回，与下载的图片共用同一块缓冲区
+     * @param image 下载的图片，调用方仍需自行close
+     * @return 准备上传的图片，由调用方close
+     */
+    public PreparedImage preprocess(DownloadedImage image) {
+        if (!enabled || image.format() == ImageFormat.WEBP
+                || (image.format() == ImageFormat.JPEG && image.size() <= passThroughBytes)) {
+            return original(image);
+        }
+        long start = System.currentTimeMillis();
+        try {
+            ByteBuf encoded = downscaleToJpeg(image);
+            if (encoded == null) {
+                return original(image);
+            }
+            if (encoded.readableBytes() >= image.size()) {
+                encoded.release();
+                return original(image);
+            }
+            log.info("图片预处理完成，{} {} bytes -> image/jpeg {} bytes，耗时: {} ms",
+                    image.format(), image.size(), encoded.readableBytes(), System.currentTimeMillis() - start);
+            return new PreparedImage(encoded, ImageFormat.JPEG.mimeType());
+        } catch (Exception e) {
+            log.warn("图片预处理失败，使用原图: {}", e.getMessage());
+            return original(image);
+        }
+    }
+
+    private static PreparedImage original(DownloadedImage image) {
+        return new PreparedImage(image.data().retainedDuplicate(), image.format().mimeType());
+    }
+
+    /**
+     * 子采样解码、缩放并编码为JPEG
+     * @return 池化缓冲区中的JPEG数据，无法解码时返回null
+     */
+    private ByteBuf downscaleToJpeg(DownloadedImage image) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(image.inputStream())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                double scale = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+                int targetWidth = Math.max(1, (int) Math.round(width * scale));
+                int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+                // 整数倍子采样，解码结果不小于目标尺寸，剩下的缩放交给双线性插值
+                int subsampling = Math.max(1, (int) (1 / scale));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+
+                // 转为RGB，透明区域填充白色
+                BufferedImage rgb = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+                Graphics2D graphics = rgb.createGraphics();
+                try {
+                    graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    graphics.setColor(Color.WHITE);
+                    graphics.fillRect(0, 0, targetWidth, targetHeight);
+                    graphics.drawImage(decoded, 0, 0, targetWidth, targetHeight, null);
+                } finally {
+                    graphics.dispose();
+                }
+                return encodeJpeg(rgb);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private ByteBuf encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteBuf output = PooledBuffers.ALLOCATOR.directBuffer(64 * 1024);
+        try (ImageOutputStream imageOutput = ImageIO.createImageOutputStream(new ByteBufOutputStream(output))) {
+            writer.setOutput(imageOutput);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException | RuntimeException e) {
+            output.release();
+            throw e;
+        } finally {
+            writer.dispose();
+        }
+        return output;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.imageai.image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.OptionalLong;
+
+/**
+ * 图片感知哈希（dHash）
+ * 把图片缩小为9x8的灰度图，每行相邻像素比较亮度得到64位哈希。
+ * 同一张照片缩放、重新压缩或换一个地址后哈希基本不变，汉明距离很小；不同图片的距离通常在20以上
+ */
+public final class PerceptualHash {
+
+    private static final int WIDTH = 9;
+
+    private static final int HEIGHT = 8;
+
+    /**
+     * 解码时的子采样目标：短边不少于该像素数
+     * 子采样只是隔行隔列取点，解码得太小时混叠明显，同一张照片缩放前后的哈希距离会变大
+     */
+    private static final int DECODE_SIZE = 320;
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * 计算图片的dHash
+     * 解码时按比例做源图子采样，只构建短边约320像素的像素数据
+     * @param data 图片字节数组
+     * @return 64位哈希，JDK无法解码的格式（WEBP）或损坏的图片返回empty
+     */
+    public static OptionalLong dHash(byte[] data) {
+        return dHash(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * 计算图片的dHash
+     * @param data 图片数据的输入流
+     * @return 64位哈希，JDK无法解码的格式（WEBP）或损坏的图片返回empty
+     */
+    public static OptionalLong dHash(InputStream data) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(data)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return OptionalLong.empty();
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int subsampling = Math.max(1, Math.min(reader.getWidth(0), reader.getHeight(0)) / DECODE_SIZE);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return OptionalLong.of(dHash(reader.read(0, param)));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    /**
+     * 计算已解码图片的dHash
+     */
+    public static long dHash(BufferedImage image) {
+        double[] luminance = shrink(image);
+        long hash = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH - 1; x++) {
+                hash <<= 1;
+                if (luminance[y * WIDTH + x] > luminance[y * WIDTH + x + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 两个哈希的汉明距离
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * 按块平均缩小为9x8的亮度矩阵
+     * 块平均不会像插值缩放那样丢掉块内的像素，缩放前后的结果更稳定
+     */
+    private static double[] shrink(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double[] sums = new double[WIDTH * HEIGHT];
+        int[] counts = new int[WIDTH * HEIGHT];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            int cellY = y * HEIGHT / height;
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                // ITU-R BT.601亮度
+                double gray = 0.299 * ((rgb >> 16) & 0xFF) + 0.587 * ((rgb >> 8) & 0xFF) + 0.114 * (rgb & 0xFF);
+                int cell = cellY * WIDTH + x * WIDTH / width;
+                sums[cell] += gray;
+                counts[cell]++;
+            }
+        }
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] = counts[i] == 0 ? 0 : sums[i] / counts[i];
+        }
+        return sums;
+    }
+}
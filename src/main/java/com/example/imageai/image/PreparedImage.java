@@ -0,0 +1,24 @@
+package com.example.imageai.image;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 预处理后准备上传给模型的图片
+ * 图片数据在池化的直接内存中，上传（包括重试）结束后调用close释放
+ * @param data 图片数据，读取时不移动读索引
+ * @param mimeType 图片MIME类型
+ */
+public record PreparedImage(ByteBuf data, String mimeType) implements AutoCloseable {
+
+    /**
+     * 图片大小（字节）
+     */
+    public int size() {
+        return data.readableBytes();
+    }
+
+    @Override
+    public void close() {
+        data.release();
+    }
+}
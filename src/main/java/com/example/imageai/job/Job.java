@@ -0,0 +1,82 @@
+package com.example.imageai.job;
+
+import com.example.imageai.dto.AudioFormat;
+import com.example.imageai.dto.AudioResponseMode;
+import com.example.imageai.dto.ImageAnalysisBatchItem;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 批量分析任务
+ * 状态和结果以JSON形式持久化在JobStore中
+ */
+@Data
+public class Job {
+
+    /**
+     * 任务ID
+     */
+    private String id;
+
+    /**
+     * 提交方标识，同一优先级内按提交方轮流调度
+     */
+    private String clientId;
+
+    private JobPriority priority;
+
+    private volatile JobStatus status;
+
+    private List<String> imageUrls;
+
+    /**
+     * 语音数据的返回方式，固定为REFERENCE：结果中只保存语音ID，语音数据不随任务持久化
+     */
+    private AudioResponseMode responseMode;
+
+    /**
+     * 语音格式，旧版本保存的任务没有此字段，按wav处理
+     */
+    private AudioFormat audioFormat;
+
+    /**
+     * 音色，为null时按每张图片的描述文本选择
+     */
+    private String voice;
+
+    /**
+     * 任务结束后回调的地址（可选）
+     */
+    private String callbackUrl;
+
+    private Instant createdAt;
+
+    private volatile Instant startedAt;
+
+    private volatile Instant finishedAt;
+
+    /**
+     * 每张图片的结果，按完成顺序排列
+     */
+    private List<ImageAnalysisBatchItem> results = new CopyOnWriteArrayList<>();
+
+    /**
+     * 整个任务失败时的错误信息
+     */
+    private volatile String error;
+
+    public int getTotal() {
+        return imageUrls == null ? 0 : imageUrls.size();
+    }
+
+    public int getCompleted() {
+        return results.size();
+    }
+
+    public void setResults(List<ImageAnalysisBatchItem> results) {
+        this.results = new CopyOnWriteArrayList<>(results);
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.imageai.job;
+
+/**
+ * 任务优先级，按声明顺序从高到低调度
+ */
+public enum JobPriority {
+    HIGH,
+    NORMAL,
+    LOW
+}
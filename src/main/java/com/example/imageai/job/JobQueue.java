@@ -0,0 +1,130 @@
+package com.example.imageai.job;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 任务等待队列
+ * 不同优先级之间严格按优先级调度；同一优先级内按提交方轮流取任务，
+ * 一个提交方一次性提交大量任务不会让其他提交方一直等待
+ */
+public class JobQueue {
+
+    private final int maxSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = lock.newCondition();
+
+    private final Map<JobPriority, Level> levels = new EnumMap<>(JobPriority.class);
+
+    private int size;
+
+    public JobQueue(int maxSize) {
+        this.maxSize = maxSize;
+        for (JobPriority priority : JobPriority.values()) {
+            levels.put(priority, new Level());
+        }
+    }
+
+    /**
+     * 提交任务，队列已满时返回false
+     */
+    public boolean offer(Job job) {
+        lock.lock();
+        try {
+            if (size >= maxSize) {
+                return false;
+            }
+            enqueue(job);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 重新入队（重启恢复），不受容量限制
+     */
+    public void requeue(Job job) {
+        lock.lock();
+        try {
+            enqueue(job);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 取出下一个任务ID，队列为空时阻塞等待
+     */
+    public String take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (size == 0) {
+                notEmpty.await();
+            }
+            for (JobPriority priority : JobPriority.values()) {
+                String jobId = levels.get(priority).poll();
+                if (jobId != null) {
+                    size--;
+                    return jobId;
+                }
+            }
+            throw new IllegalStateException("任务队列计数异常");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(Job job) {
+        levels.get(job.getPriority()).add(job.getClientId(), job.getId());
+        size++;
+        notEmpty.signal();
+    }
+
+    /**
+     * 单个优先级的队列：每个提交方一个FIFO队列，提交方按轮转顺序出队
+     */
+    private static class Level {
+
+        private final Map<String, ArrayDeque<String>> byClient = new HashMap<>();
+
+        private final ArrayDeque<String> rotation = new ArrayDeque<>();
+
+        void add(String clientId, String jobId) {
+            byClient.computeIfAbsent(clientId, k -> {
+                rotation.add(k);
+                return new ArrayDeque<>();
+            }).add(jobId);
+        }
+
+        String poll() {
+            String clientId = rotation.poll();
+            if (clientId == null) {
+                return null;
+            }
+            ArrayDeque<String> jobs = byClient.get(clientId);
+            String jobId = jobs.poll();
+            if (jobs.isEmpty()) {
+                byClient.remove(clientId);
+            } else {
+                rotation.add(clientId);
+            }
+            return jobId;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.imageai.job;
+
+import com.example.imageai.audio.VoiceSelector;
+import com.example.imageai.dto.AudioFormat;
+import com.example.imageai.dto.AudioResponseMode;
+import com.example.imageai.dto.JobSubmitRequest;
+import com.example.imageai.service.ImageAnalysisService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * 异步批量分析任务
+ * 提交的任务先持久化再入队，由固定数量的工作线程按优先级和提交方轮转取出执行；
+ * 流量高峰时任务在队列中等待，而不是在控制器上超时。重启后未完成的任务重新入队。
+ * 任务结果只保存语音ID（REFERENCE），语音数据留在AudioStore中，不随任务JSON反复写盘
+ */
+@Slf4j
+@Service
+public class JobService {
+
+    private final ImageAnalysisService imageAnalysisService;
+
+    private final JobStore jobStore;
+
+    private final VoiceSelector voiceSelector;
+
+    private final WebClient callbackWebClient;
+
+    private final JobQueue queue;
+
+    private final int workerCount;
+
+    private final Duration jobTimeout;
+
+    /**
+     * 允许回调的主机（小写），为空时不接受回调地址
+     */
+    private final Set<String> callbackAllowedHosts;
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    public JobService(ImageAnalysisService imageAnalysisService,
+                      JobStore jobStore,
+                      VoiceSelector voiceSelector,
+                      @Qualifier("jobCallbackWebClient") WebClient callbackWebClient,
+                      @Value("${job.queue.max-size:10000}") int maxQueueSize,
+                      @Value("${job.worker.count:4}") int workerCount,
+                      @Value("${job.timeout:30m}") Duration jobTimeout,
+                      @Value("${job.callback.allowed-hosts:}") List<String> callbackAllowedHosts) {
+        this.imageAnalysisService = imageAnalysisService;
+        this.jobStore = jobStore;
+        this.voiceSelector = voiceSelector;
+        this.callbackWebClient = callbackWebClient;
+        this.queue = new JobQueue(maxQueueSize);
+        this.workerCount = workerCount;
+        this.jobTimeout = jobTimeout;
+        this.callbackAllowedHosts = callbackAllowedHosts.stream()
+                .map(String::trim)
+                .filter(host -> !host.isEmpty())
+                .map(host -> host.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * 回调地址的主机是否在job.callback.allowed-hosts中
+     * 回调由服务端发起，不限制主机时可被用来访问内网地址
+     * @param callbackUrl 回调地址
+     */
+    public boolean isCallbackAllowed(String callbackUrl) {
+        try {
+            String host = URI.create(callbackUrl).getHost();
+            return host != null && callbackAllowedHosts.contains(host.toLowerCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 提交任务
+     * @param request 任务请求
+     * @param clientId 提交方标识
+     * @return 已入队的任务，队列已满时为空
+     */
+    public Optional<Job> submit(JobSubmitRequest request, String clientId) {
+        Job job = new Job();
+        job.setId(UUID.randomUUID().toString().replace("-", ""));
+        job.setClientId(clientId);
+        job.setPriority(request.getPriority());
+        job.setStatus(JobStatus.QUEUED);
+        job.setImageUrls(List.copyOf(request.getImageUrls()));
+        job.setResponseMode(AudioResponseMode.REFERENCE);
+        job.setAudioFormat(request.getAudioFormat());
+        job.setVoice(voiceSelector.forRequest(request.getVoice(), clientId));
+        job.setCallbackUrl(request.getCallbackUrl());
+        job.setCreatedAt(Instant.now());
+        jobStore.save(job);
+        if (!queue.offer(job)) {
+            jobStore.delete(job);
+            return Optional.empty();
+        }
+        log.info("任务已提交: {}，提交方: {}，图片数: {}，优先级: {}",
+                job.getId(), clientId, job.getTotal(), job.getPriority());
+        return Optional.of(job);
+    }
+
+    public Optional<Job> get(String id) {
+        return jobStore.get(id);
+    }
+
+    /**
+     * 排队中的任务数
+     */
+    public int queuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * 应用就绪后恢复未完成的任务并启动工作线程
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        List<Job> pending = jobStore.all().stream()
+                .filter(job -> !job.getStatus().isFinished())
+                .sorted(Comparator.comparing(Job::getCreatedAt))
+                .toList();
+        for (Job job : pending) {
+            // 执行到一半的任务从头开始，已有结果作废
+            job.setStatus(JobStatus.QUEUED);
+            job.setStartedAt(null);
+            job.setResults(List.of());
+            jobStore.save(job);
+            queue.requeue(job);
+        }
+        if (!pending.isEmpty()) {
+            log.info("恢复未完成的任务: {}", pending.size());
+        }
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(Thread.ofVirtual().name("job-worker-" + i).start(this::work));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.forEach(Thread::interrupt);
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            String jobId;
+            try {
+                jobId = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            jobStore.get(jobId).ifPresent(this::run);
+        }
+    }
+
+    private void run(Job job) {
+        log.info("开始执行任务: {}", job.getId());
+        job.setStatus(JobStatus.RUNNING);
+        job.setStartedAt(Instant.now());
+        jobStore.save(job);
+        try {
+            AudioFormat audioFormat = job.getAudioFormat() == null ? AudioFormat.WAV : job.getAudioFormat();
+            // 旧版本保存的任务可能是INLINE，同样只保存语音ID
+            // 期限作用于整个任务：Flux.timeout只限制相邻两项的间隔，每张图片都在期限内完成的任务仍可能无限运行
+            imageAnalysisService.analyzeBatch(job.getImageUrls(), AudioResponseMode.REFERENCE, audioFormat, job.getVoice())
+                    .doOnNext(item -> job.getResults().add(item))
+                    .then()
+                    .timeout(jobTimeout, Mono.error(() -> new IllegalStateException("超过" + jobTimeout + "未完成")))
+                    .block();
+            job.setStatus(JobStatus.SUCCEEDED);
+        } catch (RuntimeException e) {
+            if (Thread.currentThread().isInterrupted() || e.getCause() instanceof InterruptedException) {
+                // 应用关闭，保留RUNNING状态，下次启动重新执行
+                return;
+            }
+            log.error("任务执行失败: {}", job.getId(), e);
+            job.setError("任务执行失败: " + e.getMessage());
+            job.setStatus(JobStatus.FAILED);
+        }
+        job.setFinishedAt(Instant.now());
+        jobStore.save(job);
+        log.info("任务执行结束: {}，状态: {}，耗时: {} ms", job.getId(), job.getStatus(),
+                Duration.between(job.getStartedAt(), job.getFinishedAt()).toMillis());
+        notifyCallback(job);
+        jobStore.purgeExpired();
+    }
+
+    /**
+     * 向回调地址发送任务详情，失败时退避重试
+     * 提交后允许列表可能已变更，发送前再检查一次
+     */
+    private void notifyCallback(Job job) {
+        if (job.getCallbackUrl() == null) {
+            return;
+        }
+        if (!isCallbackAllowed(job.getCallbackUrl())) {
+            log.warn("回调地址不在允许列表中，已跳过: {}，回调地址: {}", job.getId(), job.getCallbackUrl());
+            return;
+        }
+        callbackWebClient.post()
+                .uri(job.getCallbackUrl())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(job)
+                .retrieve()
+                .toBodilessEntity()
+                .retryWhen(Retry.backoff(3, Duration.ofSeconds(1)))
+                .subscribe(
+                        response -> log.info("任务回调成功: {}", job.getId()),
+                        e -> log.warn("任务回调失败: {}，回调地址: {}", job.getId(), job.getCallbackUrl(), e));
+    }
+}
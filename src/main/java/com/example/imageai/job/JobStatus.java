@@ -0,0 +1,31 @@
+package com.example.imageai.job;
+
+/**
+ * 任务状态
+ */
+public enum JobStatus {
+
+    /**
+     * 排队中
+     */
+    QUEUED,
+
+    /**
+     * 执行中
+     */
+    RUNNING,
+
+    /**
+     * 已完成，单张图片的失败记录在对应结果中
+     */
+    SUCCEEDED,
+
+    /**
+     * 整个任务失败（如超时）
+     */
+    FAILED;
+
+    public boolean isFinished() {
+        return this == SUCCEEDED || this == FAILED;
+    }
+}
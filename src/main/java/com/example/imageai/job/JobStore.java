@@ -0,0 +1,137 @@
+package com.example.imageai.job;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 基于本地文件的任务存储
+ * 每个任务一个JSON文件，先写临时文件再原子替换，进程崩溃不会留下写了一半的文件；
+ * 启动时加载全部任务，内存中保留一份供查询
+ */
+@Slf4j
+@Component
+public class JobStore {
+
+    private final ObjectMapper objectMapper;
+
+    private final Path dir;
+
+    private final Duration retention;
+
+    private final ConcurrentHashMap<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public JobStore(ObjectMapper objectMapper,
+                    @Value("${job.store.dir:./data/jobs}") String dir,
+                    @Value("${job.store.retention:24h}") Duration retention) {
+        this.objectMapper = objectMapper;
+        this.dir = Path.of(dir);
+        this.retention = retention;
+    }
+
+    public Optional<Job> get(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    public Collection<Job> all() {
+        return jobs.values();
+    }
+
+    /**
+     * 保存任务状态
+     */
+    public void save(Job job) {
+        jobs.put(job.getId(), job);
+        Path file = dir.resolve(job.getId() + ".json");
+        try {
+            Path tmp = Files.createTempFile(dir, job.getId(), ".tmp");
+            objectMapper.writeValue(tmp.toFile(), job);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("任务状态写入失败: {}", job.getId(), e);
+        }
+    }
+
+    /**
+     * 删除任务
+     */
+    public void delete(Job job) {
+        jobs.remove(job.getId());
+        deleteFile(job.getId());
+    }
+
+    /**
+     * 删除结束时间超过保留期的任务
+     */
+    public void purgeExpired() {
+        Instant threshold = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> {
+            if (job.getStatus().isFinished() && job.getFinishedAt() != null && job.getFinishedAt().isBefore(threshold)) {
+                deleteFile(job.getId());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private void deleteFile(String id) {
+        try {
+            Files.deleteIfExists(dir.resolve(id + ".json"));
+        } catch (IOException e) {
+            log.warn("任务文件删除失败: {}", id, e);
+        }
+    }
+
+    /**
+     * 加载已保存的任务，在依赖注入完成后、任务服务启动前执行
+     */
+    @PostConstruct
+    void load() {
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("任务存储目录创建失败: " + dir, e);
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    // 上次退出时未完成的写入
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException ignored) {
+                        // 下次启动再清理
+                    }
+                    return;
+                }
+                if (!name.endsWith(".json")) {
+                    return;
+                }
+                try {
+                    Job job = objectMapper.readValue(file.toFile(), Job.class);
+                    jobs.put(job.getId(), job);
+                } catch (IOException e) {
+                    log.warn("任务文件读取失败，已忽略: {}", file, e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("任务存储加载失败: " + dir, e);
+        }
+        purgeExpired();
+        log.info("任务存储加载完成，任务数: {}", jobs.size());
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.imageai.limit;
+
+/**
+ * AIMD自适应并发上限
+ * 响应正常且并发用满一半以上时加性增长（每个完整窗口约+1）；
+ * 延迟明显高于基线、超时或被上游限流时乘性下降。非线程安全，由调用方加锁
+ */
+class AimdLimit {
+
+    private static final double BACKOFF_RATIO = 0.75;
+
+    private static final long MIN_COOLDOWN_NANOS = 100_000_000L;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double latencyTolerance;
+
+    private double limit;
+
+    /**
+     * 延迟基线：取观察到的最小延迟，并缓慢向上漂移以适应上游整体变慢
+     */
+    private double baselineNanos;
+
+    private long lastDecreaseNanos;
+
+    AimdLimit(int initialLimit, int minLimit, int maxLimit, double latencyTolerance) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    int get() {
+        return (int) limit;
+    }
+
+    /**
+     * 调用成功
+     * @param latencyNanos 调用延迟（流式调用为首个数据的延迟）
+     * @param inFlight 调用结束前的并发数
+     */
+    void onSuccess(long latencyNanos, int inFlight, long nowNanos) {
+        if (baselineNanos == 0 || latencyNanos < baselineNanos) {
+            baselineNanos = latencyNanos;
+        } else {
+            baselineNanos = baselineNanos * 0.99 + latencyNanos * 0.01;
+        }
+        if (latencyNanos > baselineNanos * latencyTolerance) {
+            onOverload(nowNanos);
+        } else if (inFlight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    /**
+     * 上游过载（限流、超时、5xx或延迟过高）
+     * 同一批并发请求的连续失败只下降一次
+     */
+    void onOverload(long nowNanos) {
+        if (nowNanos - lastDecreaseNanos < Math.max(MIN_COOLDOWN_NANOS, (long) baselineNanos)) {
+            return;
+        }
+        limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        lastDecreaseNanos = nowNanos;
+    }
+}
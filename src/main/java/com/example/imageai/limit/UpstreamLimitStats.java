@@ -0,0 +1,17 @@
+package com.example.imageai.limit;
+
+import com.example.imageai.service.Upstream;
+
+/**
+ * 上游限流器统计
+ * @param upstream 上游服务
+ * @param limit 当前自适应并发上限
+ * @param inFlight 进行中的调用数
+ * @param queued 排队等待的调用数
+ * @param ratePerSecond 令牌桶速率，0表示不限速
+ * @param throttled 上游返回429的次数
+ * @param rejected 本地排队已满或等待超时被拒绝的次数
+ */
+public record UpstreamLimitStats(Upstream upstream, int limit, int inFlight, int queued,
+                                 double ratePerSecond, long throttled, long rejected) {
+}
@@ -0,0 +1,406 @@
+package com.example.imageai.limit;
+
+import com.example.imageai.service.Upstream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 上游限流器
+ * 每个上游一个令牌桶（QPS）和一个AIMD自适应并发上限。许可不足时调用在队列中等待，
+ * 等待期间不占用线程；排队已满或等待超时抛出{@link UpstreamThrottledException}。
+ * 上游返回429时按Retry-After暂停发放许可并下调并发上限，超时和5xx同样视为过载
+ */
+@Slf4j
+@Component
+public class UpstreamLimiter {
+
+    private final Map<Upstream, Gate> gates = new EnumMap<>(Upstream.class);
+
+    public UpstreamLimiter(
+            @Value("${qianwen.max-concurrency:32}") int qianWenMaxConcurrency,
+            @Value("${qianwen.rate-limit:20}") double qianWenRateLimit,
+            @Value("${ali.tts.max-concurrency:32}") int ttsMaxConcurrency,
+            @Value("${ali.tts.rate-limit:20}") double ttsRateLimit,
+            @Value("${image.download.max-concurrency:64}") int downloadMaxConcurrency,
+            @Value("${image.download.rate-limit:0}") double downloadRateLimit,
+            @Value("${upstream.limit.initial-concurrency:8}") int initialConcurrency,
+            @Value("${upstream.limit.latency-tolerance:2.0}") double latencyTolerance,
+            @Value("${upstream.max-queue:1000}") int maxQueue,
+            @Value("${upstream.acquire-timeout:30s}") Duration acquireTimeout) {
+        gates.put(Upstream.QIANWEN, new Gate(Upstream.QIANWEN, qianWenRateLimit,
+                new AimdLimit(initialConcurrency, 1, qianWenMaxConcurrency, latencyTolerance), maxQueue, acquireTimeout));
+        gates.put(Upstream.TTS, new Gate(Upstream.TTS, ttsRateLimit,
+                new AimdLimit(initialConcurrency, 1, ttsMaxConcurrency, latencyTolerance), maxQueue, acquireTimeout));
+        gates.put(Upstream.IMAGE_DOWNLOAD, new Gate(Upstream.IMAGE_DOWNLOAD, downloadRateLimit,
+                new AimdLimit(initialConcurrency, 1, downloadMaxConcurrency, latencyTolerance), maxQueue, acquireTimeout));
+    }
+
+    /**
+     * 取得许可后执行调用，调用结束（成功、失败或取消）时归还许可
+     * @param upstream 上游服务
+     * @param call 上游调用
+     * @return 调用结果
+     */
+    public <T> Mono<T> execute(Upstream upstream, Supplier<Mono<T>> call) {
+        Gate gate = gates.get(upstream);
+        return gate.acquire()
+                .flatMap(permit -> Mono.defer(call)
+                        .doOnNext(value -> permit.firstSignal())
+                        .doOnSuccess(value -> permit.release(null))
+                        .doOnError(permit::release)
+                        .doOnCancel(permit::cancel))
+                .onErrorMap(e -> throttledCause(e) != null && UpstreamThrottledException.find(e).isEmpty(),
+                        e -> gate.throttledException(throttledCause(e), e));
+    }
+
+    /**
+     * 取得许可后执行流式调用，延迟以首个数据到达为准
+     * @param upstream 上游服务
+     * @param call 上游调用
+     * @return 调用结果
+     */
+    public <T> Flux<T> executeMany(Upstream upstream, Supplier<Flux<T>> call) {
+        Gate gate = gates.get(upstream);
+        return gate.acquire()
+                .flatMapMany(permit -> Flux.defer(call)
+                        .doOnNext(value -> permit.firstSignal())
+                        .doOnComplete(() -> permit.release(null))
+                        .doOnError(permit::release)
+                        .doOnCancel(permit::cancel))
+                .onErrorMap(e -> throttledCause(e) != null && UpstreamThrottledException.find(e).isEmpty(),
+                        e -> gate.throttledException(throttledCause(e), e));
+    }
+
+    /**
+     * 各上游的限流统计
+     */
+    public List<UpstreamLimitStats> stats() {
+        return Arrays.stream(Upstream.values())
+                .map(upstream -> gates.get(upstream).stats())
+                .toList();
+    }
+
+    /**
+     * 在异常链中查找上游返回的429
+     */
+    private static WebClientResponseException throttledCause(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof WebClientResponseException response && response.getStatusCode().value() == 429) {
+                return response;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 异常是否说明上游过载
+     */
+    private static boolean isOverload(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof TimeoutException) {
+                return true;
+            }
+            if (t instanceof WebClientResponseException response && response.getStatusCode().is5xxServerError()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Duration parseRetryAfter(WebClientResponseException e) {
+        String value = e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+        if (value != null) {
+            try {
+                return Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim())));
+            } catch (NumberFormatException ignored) {
+                // HTTP日期格式的Retry-After按默认值处理
+            }
+        }
+        return Duration.ofSeconds(1);
+    }
+
+    /**
+     * 单个上游的许可发放
+     * 状态变更都在锁内完成，回调订阅者在锁外进行。
+     * 使用ReentrantLock而不是synchronized：VIRTUAL模式下虚拟线程在锁内调度定时器时可能等待调度器的队列锁，
+     * 在synchronized内等待会把虚拟线程钉在载体线程上，载体线程全部被钉住后整个进程停住
+     */
+    private static final class Gate {
+
+        private final Upstream upstream;
+
+        private final double ratePerSecond;
+
+        private final TokenBucket bucket;
+
+        private final AimdLimit limit;
+
+        private final int maxQueue;
+
+        private final Duration acquireTimeout;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+
+        private final LongAdder throttled = new LongAdder();
+
+        private final LongAdder rejected = new LongAdder();
+
+        private int inFlight;
+
+        private long blockedUntilNanos;
+
+        private boolean drainScheduled;
+
+        Gate(Upstream upstream, double ratePerSecond, AimdLimit limit, int maxQueue, Duration acquireTimeout) {
+            this.upstream = upstream;
+            this.ratePerSecond = ratePerSecond;
+            this.bucket = ratePerSecond > 0 ? new TokenBucket(ratePerSecond, (int) Math.ceil(ratePerSecond)) : null;
+            this.limit = limit;
+            this.maxQueue = maxQueue;
+            this.acquireTimeout = acquireTimeout;
+        }
+
+        Mono<Permit> acquire() {
+            return Mono.<Permit>create(sink -> {
+                        Waiter waiter = new Waiter(sink);
+                        UpstreamThrottledException rejection = null;
+                        lock.lock();
+                        try {
+                            if (waiters.size() >= maxQueue) {
+                                rejected.increment();
+                                rejection = rejectedException("排队已满");
+                            } else {
+                                waiters.add(waiter);
+                                waiter.timer = Schedulers.parallel().schedule(() -> expire(waiter),
+                                        acquireTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                            }
+                        } finally {
+                            lock.unlock();
+                        }
+                        if (rejection != null) {
+                            sink.error(rejection);
+                            return;
+                        }
+                        sink.onCancel(() -> cancel(waiter));
+                        drain();
+                    })
+                    // 许可发放给已取消的订阅者时会被丢弃，在这里归还
+                    .doOnDiscard(Permit.class, Permit::cancel);
+        }
+
+        private void expire(Waiter waiter) {
+            lock.lock();
+            try {
+                if (waiter.state != WaiterState.WAITING) {
+                    return;
+                }
+                waiter.state = WaiterState.CANCELLED;
+                waiters.remove(waiter);
+                rejected.increment();
+            } finally {
+                lock.unlock();
+            }
+            waiter.sink.error(rejectedException("等待许可超时"));
+        }
+
+        private void cancel(Waiter waiter) {
+            lock.lock();
+            try {
+                if (waiter.state != WaiterState.WAITING) {
+                    return;
+                }
+                waiter.state = WaiterState.CANCELLED;
+                waiters.remove(waiter);
+            } finally {
+                lock.unlock();
+            }
+            waiter.timer.dispose();
+        }
+
+        /**
+         * 在并发上限、令牌桶和Retry-After暂停允许的范围内依次发放许可
+         * 因令牌或暂停而受阻时，安排在可用时刻再次发放
+         */
+        private void drain() {
+            List<Waiter> granted = new ArrayList<>();
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                long delayNanos = 0;
+                while (!waiters.isEmpty() && inFlight < limit.get()) {
+                    if (now < blockedUntilNanos) {
+                        delayNanos = blockedUntilNanos - now;
+                        break;
+                    }
+                    if (bucket != null && !bucket.tryTake(now)) {
+                        delayNanos = bucket.nanosUntilAvailable(now);
+                        break;
+                    }
+                    Waiter waiter = waiters.poll();
+                    waiter.state = WaiterState.GRANTED;
+                    inFlight++;
+                    granted.add(waiter);
+                }
+                if (delayNanos > 0 && !drainScheduled) {
+                    drainScheduled = true;
+                    Schedulers.parallel().schedule(() -> {
+                        lock.lock();
+                        try {
+                            drainScheduled = false;
+                        } finally {
+                            lock.unlock();
+                        }
+                        drain();
+                    }, delayNanos, TimeUnit.NANOSECONDS);
+                }
+            } finally {
+                lock.unlock();
+            }
+            for (Waiter waiter : granted) {
+                waiter.timer.dispose();
+                waiter.sink.success(new Permit(this));
+            }
+        }
+
+        private void complete(long latencyNanos, Throwable error) {
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                int before = inFlight--;
+                WebClientResponseException throttledResponse = error != null ? throttledCause(error) : null;
+                if (throttledResponse != null) {
+                    throttled.increment();
+                    blockedUntilNanos = Math.max(blockedUntilNanos, now + parseRetryAfter(throttledResponse).toNanos());
+                    limit.onOverload(now);
+                    log.warn("{}返回429，并发上限调整为: {}", upstream, limit.get());
+                } else if (error != null && isOverload(error)) {
+                    limit.onOverload(now);
+                } else if (error == null) {
+                    limit.onSuccess(latencyNanos, before, now);
+                }
+            } finally {
+                lock.unlock();
+            }
+            drain();
+        }
+
+        private void cancelled() {
+            lock.lock();
+            try {
+                inFlight--;
+            } finally {
+                lock.unlock();
+            }
+            drain();
+        }
+
+        UpstreamThrottledException throttledException(WebClientResponseException response, Throwable cause) {
+            return new UpstreamThrottledException(upstream, parseRetryAfter(response), upstream + "触发上游限流", cause);
+        }
+
+        /**
+         * 本地拒绝时按排队长度估算重试等待时间
+         */
+        private UpstreamThrottledException rejectedException(String reason) {
+            double throughput = Math.max(1, ratePerSecond > 0 ? Math.min(ratePerSecond, limit.get()) : limit.get());
+            long seconds;
+            lock.lock();
+            try {
+                seconds = Math.max(1, (long) Math.ceil(waiters.size() / throughput));
+            } finally {
+                lock.unlock();
+            }
+            return new UpstreamThrottledException(upstream, Duration.ofSeconds(seconds),
+                    upstream + reason + "，请稍后重试", null);
+        }
+
+        UpstreamLimitStats stats() {
+            lock.lock();
+            try {
+                return new UpstreamLimitStats(upstream, limit.get(), inFlight, waiters.size(), ratePerSecond,
+                        throttled.sum(), rejected.sum());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private enum WaiterState {
+        WAITING,
+        GRANTED,
+        CANCELLED
+    }
+
+    private static final class Waiter {
+
+        private final MonoSink<Permit> sink;
+
+        private WaiterState state = WaiterState.WAITING;
+
+        private Disposable timer;
+
+        Waiter(MonoSink<Permit> sink) {
+            this.sink = sink;
+        }
+    }
+
+    /**
+     * 一次调用的许可，只归还一次
+     */
+    private static final class Permit {
+
+        private final Gate gate;
+
+        private final long startNanos = System.nanoTime();
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private volatile long latencyNanos = -1;
+
+        Permit(Gate gate) {
+            this.gate = gate;
+        }
+
+        void firstSignal() {
+            if (latencyNanos < 0) {
+                latencyNanos = System.nanoTime() - startNanos;
+            }
+        }
+
+        void release(Throwable error) {
+            if (released.compareAndSet(false, true)) {
+                gate.complete(latencyNanos >= 0 ? latencyNanos : System.nanoTime() - startNanos, error);
+            }
+        }
+
+        void cancel() {
+            if (released.compareAndSet(false, true)) {
+                gate.cancelled();
+            }
+        }
+    }
+}
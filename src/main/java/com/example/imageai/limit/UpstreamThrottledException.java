@@ -0,0 +1,39 @@
+package com.example.imageai.limit;
+
+import com.example.imageai.service.Upstream;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * 上游限流
+ * 上游返回429，或本地排队已满、等待超时时抛出；调用方应向客户端返回429和Retry-After，而不是降级
+ */
+@Getter
+public class UpstreamThrottledException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Upstream upstream;
+
+    private final Duration retryAfter;
+
+    public UpstreamThrottledException(Upstream upstream, Duration retryAfter, String message, Throwable cause) {
+        super(message, cause);
+        this.upstream = upstream;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * 在异常链中查找限流异常
+     */
+    public static Optional<UpstreamThrottledException> find(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof UpstreamThrottledException throttled) {
+                return Optional.of(throttled);
+            }
+        }
+        return Optional.empty();
+    }
+}
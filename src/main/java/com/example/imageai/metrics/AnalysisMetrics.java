@@ -0,0 +1,146 @@
+package com.example.imageai.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 分析链路指标
+ * image.analysis.stage：各阶段耗时（带直方图，可计算p99），按stage和outcome区分；
+ * image.analysis.payload：各类数据体的大小分布；
+ * image.analysis.tts.mock：TTS失败降级为模拟音频的次数
+ */
+@Component
+public class AnalysisMetrics {
+
+    private final MeterRegistry registry;
+
+    private final Map<Stage, Timer> succeeded = new EnumMap<>(Stage.class);
+
+    private final Map<Stage, Timer> failed = new EnumMap<>(Stage.class);
+
+    private final Map<Stage, Timer> cancelled = new EnumMap<>(Stage.class);
+
+    private final Map<Payload, DistributionSummary> payloads = new EnumMap<>(Payload.class);
+
+    private final Counter mockAudio;
+
+    private final Counter nearDuplicateHits;
+
+    private final Counter nearDuplicateMisses;
+
+    public AnalysisMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (Stage stage : Stage.values()) {
+            succeeded.put(stage, timer(stage, "success"));
+            failed.put(stage, timer(stage, "error"));
+            cancelled.put(stage, timer(stage, "cancelled"));
+        }
+        for (Payload payload : Payload.values()) {
+            payloads.put(payload, DistributionSummary.builder("image.analysis.payload")
+                    .description("数据体大小")
+                    .baseUnit("bytes")
+                    .tag("payload", payload.tag())
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        this.mockAudio = Counter.builder("image.analysis.tts.mock")
+                .description("TTS失败降级为模拟音频的次数")
+                .register(registry);
+        this.nearDuplicateHits = nearDuplicateCounter(registry, "hit");
+        this.nearDuplicateMisses = nearDuplicateCounter(registry, "miss");
+    }
+
+    /**
+     * 统计同步阶段耗时
+     */
+    public <T> T time(Stage stage, Supplier<T> call) {
+        Timer.Sample sample = Timer.start(registry);
+        boolean success = false;
+        try {
+            T result = call.get();
+            success = true;
+            return result;
+        } finally {
+            sample.stop(success ? succeeded.get(stage) : failed.get(stage));
+        }
+    }
+
+    /**
+     * 统计异步阶段耗时，从订阅开始到结束
+     */
+    public <T> Mono<T> time(Stage stage, Mono<T> mono) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return mono.doOnSuccess(value -> sample.stop(succeeded.get(stage)))
+                    .doOnError(e -> sample.stop(failed.get(stage)))
+                    .doOnCancel(() -> sample.stop(cancelled.get(stage)));
+        });
+    }
+
+    /**
+     * 统计流式阶段耗时，从订阅开始到流结束
+     */
+    public <T> Flux<T> time(Stage stage, Flux<T> flux) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return flux.doOnComplete(() -> sample.stop(succeeded.get(stage)))
+                    .doOnError(e -> sample.stop(failed.get(stage)))
+                    .doOnCancel(() -> sample.stop(cancelled.get(stage)));
+        });
+    }
+
+    /**
+     * 记录已测得的阶段耗时
+     */
+    public void record(Stage stage, long nanos) {
+        succeeded.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录数据体大小
+     */
+    public void recordPayload(Payload payload, long bytes) {
+        payloads.get(payload).record(bytes);
+    }
+
+    /**
+     * 记录一次模拟音频降级
+     */
+    public void mockAudioFallback() {
+        mockAudio.increment();
+    }
+
+    /**
+     * 记录一次近似重复图片查找
+     * @param hit 是否复用了已有的描述
+     */
+    public void nearDuplicate(boolean hit) {
+        (hit ? nearDuplicateHits : nearDuplicateMisses).increment();
+    }
+
+    private static Counter nearDuplicateCounter(MeterRegistry registry, String result) {
+        return Counter.builder("image.analysis.near.duplicate")
+                .description("按感知哈希查找近似重复图片的次数")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private Timer timer(Stage stage, String outcome) {
+        return Timer.builder("image.analysis.stage")
+                .description("分析链路各阶段耗时")
+                .tag("stage", stage.tag())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.imageai.metrics;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.util.function.Function;
+
+/**
+ * 分析链路追踪
+ * 为各服务调用创建span（Micrometer Observation，经OTel桥接导出）。
+ * 当前span写入Reactor上下文，其中的WebClient调用会作为子span并向上游传递traceparent；
+ * 上下文中没有父span时取订阅线程上的当前span（例如Servlet请求的span）
+ */
+@Component
+@RequiredArgsConstructor
+public class AnalysisTracing {
+
+    /**
+     * 低基数属性：模型名
+     */
+    public static final String MODEL = "model";
+
+    /**
+     * 低基数属性：音色
+     */
+    public static final String VOICE = "voice";
+
+    /**
+     * 高基数属性：重试次数
+     */
+    public static final String RETRY_COUNT = "retry.count";
+
+    /**
+     * 高基数属性：是否发出了对冲请求
+     */
+    public static final String HEDGED = "hedged";
+
+    private final ObservationRegistry registry;
+
+    /**
+     * 在span中执行异步调用，从订阅开始到结束
+     * @param name span名称
+     * @param body 实际调用，可通过传入的Observation添加属性
+     * @return 调用结果
+     */
+    public <T> Mono<T> span(String name, Function<Observation, Mono<T>> body) {
+        return Mono.deferContextual(context -> {
+            Observation observation = Observation.createNotStarted(name, registry)
+                    .parentObservation(parent(context))
+                    .start();
+            return body.apply(observation)
+                    .doOnError(observation::error)
+                    .doFinally(signal -> observation.stop())
+                    .contextWrite(c -> c.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+    }
+
+    /**
+     * 为当前span添加高基数属性，不在span中时忽略
+     */
+    public static void tag(ContextView context, String key, Object value) {
+        Observation observation = context.getOrDefault(ObservationThreadLocalAccessor.KEY, null);
+        if (observation != null) {
+            observation.highCardinalityKeyValue(key, String.valueOf(value));
+        }
+    }
+
+    private Observation parent(ContextView context) {
+        Observation parent = context.getOrDefault(ObservationThreadLocalAccessor.KEY, null);
+        return parent != null ? parent : registry.getCurrentObservation();
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.imageai.metrics;
+
+/**
+ * 数据体类型，作为大小分布指标的payload标签
+ */
+public enum Payload {
+
+    /**
+     * 下载的原图
+     */
+    IMAGE_DOWNLOAD("image_download"),
+
+    /**
+     * 上传给通义千问的图片（预处理后）
+     */
+    IMAGE_UPLOAD("image_upload"),
+
+    /**
+     * TTS返回的语音
+     */
+    AUDIO("audio"),
+
+    /**
+     * 序列化后的响应JSON
+     */
+    RESPONSE("response");
+
+    private final String tag;
+
+    Payload(String tag) {
+        this.tag = tag;
+    }
+
+    public String tag() {
+        return tag;
+    }
+}
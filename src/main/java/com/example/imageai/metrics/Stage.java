@@ -0,0 +1,57 @@
+package com.example.imageai.metrics;
+
+/**
+ * 分析链路的阶段，作为耗时指标的stage标签
+ */
+public enum Stage {
+
+    /**
+     * 下载图片
+     */
+    DOWNLOAD("download"),
+
+    /**
+     * 图片缩放和重新编码
+     */
+    PREPROCESS("preprocess"),
+
+    /**
+     * 计算图片感知哈希并查找近似重复的图片
+     */
+    PERCEPTUAL_HASH("perceptual_hash"),
+
+    /**
+     * 调用通义千问（含重试和对冲）
+     */
+    QIANWEN("qianwen"),
+
+    /**
+     * 解析通义千问响应JSON
+     */
+    JSON_PARSE("json_parse"),
+
+    /**
+     * TTS文本清理
+     */
+    TEXT_CLEAN("text_clean"),
+
+    /**
+     * 调用阿里云TTS（含重试和对冲）
+     */
+    TTS("tts"),
+
+    /**
+     * 响应JSON序列化
+     */
+    RESPONSE_SERIALIZATION("response_serialization");
+
+    private final String tag;
+
+    Stage(String tag) {
+        this.tag = tag;
+    }
+
+    public String tag() {
+        return tag;
+    }
+}
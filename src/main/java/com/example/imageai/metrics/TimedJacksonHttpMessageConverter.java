@@ -0,0 +1,64 @@
+package com.example.imageai.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * 统计响应序列化耗时和响应大小的JSON转换器
+ * 接口返回值、SSE事件和NDJSON行都经过这里序列化
+ */
+public class TimedJacksonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    private final AnalysisMetrics metrics;
+
+    public TimedJacksonHttpMessageConverter(ObjectMapper objectMapper, AnalysisMetrics metrics) {
+        super(objectMapper);
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        CountingMessage counting = new CountingMessage(outputMessage);
+        long start = System.nanoTime();
+        super.writeInternal(object, type, counting);
+        metrics.record(Stage.RESPONSE_SERIALIZATION, System.nanoTime() - start);
+        metrics.recordPayload(Payload.RESPONSE, counting.count());
+    }
+
+    private static final class CountingMessage implements HttpOutputMessage {
+
+        private final HttpOutputMessage delegate;
+
+        private CountingOutputStream body;
+
+        CountingMessage(HttpOutputMessage delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            if (body == null) {
+                body = new CountingOutputStream(delegate.getBody());
+            }
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        long count() {
+            return body == null ? 0 : body.getByteCount();
+        }
+    }
+}
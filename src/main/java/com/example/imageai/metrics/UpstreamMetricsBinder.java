@@ -0,0 +1,142 @@
+package com.example.imageai.metrics;
+
+import com.example.imageai.cache.AnalysisCache;
+import com.example.imageai.cache.NearDuplicateIndex;
+import com.example.imageai.cache.TieredCacheStats;
+import com.example.imageai.limit.UpstreamLimitStats;
+import com.example.imageai.limit.UpstreamLimiter;
+import com.example.imageai.resilience.ResilienceStats;
+import com.example.imageai.resilience.UpstreamResilience;
+import com.example.imageai.service.Upstream;
+import com.example.imageai.util.PooledBuffers;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 把限流器、容错层、缓存、近似重复图片索引和池化缓冲区的统计注册为指标
+ * 指标在抓取时读取各组件的统计快照，不在调用路径上增加开销；
+ * 指标以组件本身作为观测对象，组件是单例，不会因弱引用被回收
+ */
+@Component
+@RequiredArgsConstructor
+public class UpstreamMetricsBinder implements MeterBinder {
+
+    private final UpstreamLimiter upstreamLimiter;
+
+    private final UpstreamResilience upstreamResilience;
+
+    private final AnalysisCache analysisCache;
+
+    private final NearDuplicateIndex nearDuplicateIndex;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Upstream upstream : Upstream.values()) {
+            String tag = upstream.name().toLowerCase();
+            Function<UpstreamLimiter, UpstreamLimitStats> limit =
+                    limiter -> find(limiter.stats(), UpstreamLimitStats::upstream, upstream);
+            Function<UpstreamResilience, ResilienceStats> resilience =
+                    r -> find(r.stats(), ResilienceStats::upstream, upstream);
+
+            gauge(registry, "upstream.limit.concurrency", "自适应并发上限", tag,
+                    upstreamLimiter, limit, UpstreamLimitStats::limit);
+            gauge(registry, "upstream.limit.in.flight", "进行中的调用数", tag,
+                    upstreamLimiter, limit, UpstreamLimitStats::inFlight);
+            gauge(registry, "upstream.limit.queued", "排队等待许可的调用数", tag,
+                    upstreamLimiter, limit, UpstreamLimitStats::queued);
+            counter(registry, "upstream.limit.throttled", "上游返回429的次数", tag,
+                    upstreamLimiter, limit, UpstreamLimitStats::throttled);
+            counter(registry, "upstream.limit.rejected", "本地排队已满或等待超时的次数", tag,
+                    upstreamLimiter, limit, UpstreamLimitStats::rejected);
+
+            gauge(registry, "upstream.circuit.state", "熔断器状态：0关闭，1半开，2打开", tag,
+                    upstreamResilience, resilience, stats -> switch (stats.circuitState()) {
+                        case "OPEN" -> 2;
+                        case "HALF_OPEN" -> 1;
+                        default -> 0;
+                    });
+            gauge(registry, "upstream.circuit.failure.rate", "熔断统计窗口内的失败率", tag,
+                    upstreamResilience, resilience, ResilienceStats::failureRate);
+            counter(registry, "upstream.calls", "上游调用次数（含重试和对冲）", tag,
+                    upstreamResilience, resilience, ResilienceStats::calls);
+            counter(registry, "upstream.retries", "重试次数", tag,
+                    upstreamResilience, resilience, ResilienceStats::retries);
+            counter(registry, "upstream.hedges", "对冲请求数", tag,
+                    upstreamResilience, resilience, ResilienceStats::hedges);
+            counter(registry, "upstream.hedge.wins", "对冲请求先于原请求返回的次数", tag,
+                    upstreamResilience, resilience, ResilienceStats::hedgeWins);
+            counter(registry, "upstream.short.circuited", "熔断期间被直接拒绝的次数", tag,
+                    upstreamResilience, resilience, ResilienceStats::shortCircuited);
+        }
+
+        for (TieredCacheStats initial : analysisCache.stats()) {
+            String name = initial.name();
+            Function<AnalysisCache, TieredCacheStats> cache = c -> find(c.stats(), TieredCacheStats::name, name);
+            cacheCounter(registry, name, "hit", cache, TieredCacheStats::hits);
+            cacheCounter(registry, name, "disk_hit", cache, TieredCacheStats::diskHits);
+            cacheCounter(registry, name, "miss", cache, TieredCacheStats::misses);
+            cacheGauge(registry, name, "memory", cache, TieredCacheStats::memoryBytes);
+            cacheGauge(registry, name, "disk", cache, TieredCacheStats::diskBytes);
+        }
+
+        Gauge.builder("image.analysis.near.duplicate.entries", nearDuplicateIndex, NearDuplicateIndex::size)
+                .description("近似重复图片索引中的图片数")
+                .register(registry);
+
+        Gauge.builder("image.analysis.payload.direct.bytes", PooledBuffers::usedDirectMemory)
+                .description("池化缓冲区占用的直接内存，持续增长说明有缓冲区没有释放")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private static <T, S> void gauge(MeterRegistry registry, String name, String description, String upstream,
+                                     T source, Function<T, S> snapshot, ToDoubleFunction<S> value) {
+        Gauge.builder(name, source, s -> value.applyAsDouble(snapshot.apply(s)))
+                .description(description)
+                .tag("upstream", upstream)
+                .register(registry);
+    }
+
+    private static <T, S> void counter(MeterRegistry registry, String name, String description, String upstream,
+                                       T source, Function<T, S> snapshot, ToDoubleFunction<S> value) {
+        FunctionCounter.builder(name, source, s -> value.applyAsDouble(snapshot.apply(s)))
+                .description(description)
+                .tag("upstream", upstream)
+                .register(registry);
+    }
+
+    private void cacheCounter(MeterRegistry registry, String cache, String result,
+                              Function<AnalysisCache, TieredCacheStats> snapshot,
+                              ToDoubleFunction<TieredCacheStats> value) {
+        FunctionCounter.builder("image.analysis.cache.requests", analysisCache,
+                        c -> value.applyAsDouble(snapshot.apply(c)))
+                .description("缓存查询次数")
+                .tags("cache", cache, "result", result)
+                .register(registry);
+    }
+
+    private void cacheGauge(MeterRegistry registry, String cache, String tier,
+                            Function<AnalysisCache, TieredCacheStats> snapshot,
+                            ToDoubleFunction<TieredCacheStats> value) {
+        Gauge.builder("image.analysis.cache.size", analysisCache, c -> value.applyAsDouble(snapshot.apply(c)))
+                .description("缓存占用字节数")
+                .baseUnit("bytes")
+                .tags("cache", cache, "tier", tier)
+                .register(registry);
+    }
+
+    private static <S, K> S find(List<S> stats, Function<S, K> key, K value) {
+        return stats.stream()
+                .filter(s -> key.apply(s).equals(value))
+                .findFirst()
+                .orElseThrow();
+    }
+}
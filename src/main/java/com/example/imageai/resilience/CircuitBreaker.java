@@ -0,0 +1,156 @@
+package com.example.imageai.resilience;
+
+import java.time.Duration;
+
+/**
+ * 熔断器
+ * 关闭状态下按最近windowSize次调用统计失败率，达到阈值后打开，打开期间直接拒绝调用；
+ * openDuration后进入半开状态，放行halfOpenCalls次试探调用，全部成功则关闭，任一失败重新打开
+ */
+class CircuitBreaker {
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int windowSize;
+
+    private final int minCalls;
+
+    private final double failureRateThreshold;
+
+    private final long openNanos;
+
+    private final int halfOpenCalls;
+
+    /**
+     * 最近的调用结果，true表示失败
+     */
+    private final boolean[] outcomes;
+
+    private int index;
+
+    private int count;
+
+    private int failures;
+
+    private State state = State.CLOSED;
+
+    private long openedAtNanos;
+
+    private int halfOpenPermits;
+
+    private int halfOpenSuccesses;
+
+    CircuitBreaker(int windowSize, int minCalls, double failureRateThreshold, Duration openDuration, int halfOpenCalls) {
+        this.windowSize = windowSize;
+        this.minCalls = Math.min(minCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.outcomes = new boolean[windowSize];
+    }
+
+    /**
+     * 是否放行本次调用
+     */
+    synchronized boolean tryAcquire(long nowNanos) {
+        if (state == State.OPEN) {
+            if (nowNanos - openedAtNanos < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits == 0) {
+                return false;
+            }
+            halfOpenPermits--;
+        }
+        return true;
+    }
+
+    synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++halfOpenSuccesses >= halfOpenCalls) {
+                close();
+            }
+            return;
+        }
+        record(false);
+    }
+
+    synchronized void onFailure(long nowNanos) {
+        if (state == State.HALF_OPEN) {
+            open(nowNanos);
+            return;
+        }
+        record(true);
+        if (count >= minCalls && (double) failures / count >= failureRateThreshold) {
+            open(nowNanos);
+        }
+    }
+
+    /**
+     * 调用被取消或失败原因与上游健康无关，不计入统计；半开状态下归还试探名额
+     */
+    synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            halfOpenPermits++;
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    /**
+     * 当前窗口内的失败率
+     */
+    synchronized double failureRate() {
+        return count == 0 ? 0 : (double) failures / count;
+    }
+
+    /**
+     * 距离进入半开状态的剩余时间
+     */
+    synchronized Duration remainingOpen(long nowNanos) {
+        return state == State.OPEN ? Duration.ofNanos(Math.max(0, openNanos - (nowNanos - openedAtNanos))) : Duration.ZERO;
+    }
+
+    private void record(boolean failure) {
+        if (count == windowSize) {
+            if (outcomes[index]) {
+                failures--;
+            }
+        } else {
+            count++;
+        }
+        outcomes[index] = failure;
+        if (failure) {
+            failures++;
+        }
+        index = (index + 1) % windowSize;
+    }
+
+    private void open(long nowNanos) {
+        state = State.OPEN;
+        openedAtNanos = nowNanos;
+        resetWindow();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        index = 0;
+        count = 0;
+        failures = 0;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.imageai.resilience;
+
+import java.util.Arrays;
+
+/**
+ * 最近调用延迟的分位数统计
+ * 保留最近capacity个样本，样本数达到refreshEvery之前每次记录都重新计算分位数，
+ * 之后每记录refreshEvery个样本重新排序计算一次，避免刚达到minSamples时分位数仍停留在最初的样本上
+ */
+class LatencyTracker {
+
+    private static final int REFRESH_EVERY = 32;
+
+    private final long[] samples;
+
+    private final long[] sorted;
+
+    private final double percentile;
+
+    private final int minSamples;
+
+    private int index;
+
+    private int count;
+
+    private int sinceRefresh;
+
+    private long cachedNanos;
+
+    LatencyTracker(int capacity, double percentile, int minSamples) {
+        this.samples = new long[capacity];
+        this.sorted = new long[capacity];
+        this.percentile = percentile;
+        this.minSamples = minSamples;
+    }
+
+    synchronized void record(long nanos) {
+        samples[index] = nanos;
+        index = (index + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+        if (++sinceRefresh >= REFRESH_EVERY || count <= REFRESH_EVERY) {
+            refresh();
+        }
+    }
+
+    /**
+     * 分位数延迟，样本不足时返回-1
+     */
+    synchronized long percentileNanos() {
+        return count < minSamples ? -1 : cachedNanos;
+    }
+
+    private void refresh() {
+        System.arraycopy(samples, 0, sorted, 0, count);
+        Arrays.sort(sorted, 0, count);
+        cachedNanos = sorted[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+        sinceRefresh = 0;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.imageai.resilience;
+
+import com.example.imageai.service.Upstream;
+
+/**
+ * 上游容错统计
+ * @param upstream 上游服务
+ * @param circuitState 熔断器状态
+ * @param failureRate 熔断统计窗口内的失败率
+ * @param hedgeDelayMillis 当前对冲请求的触发延迟，-1表示样本不足未启用
+ * @param calls 累计调用次数
+ * @param retries 累计重试次数
+ * @param hedges 累计发出的对冲请求数
+ * @param hedgeWins 对冲请求先于原请求返回的次数
+ * @param shortCircuited 熔断期间被直接拒绝的次数
+ */
+public record ResilienceStats(Upstream upstream, String circuitState, double failureRate, long hedgeDelayMillis,
+                              long calls, long retries, long hedges, long hedgeWins, long shortCircuited) {
+}
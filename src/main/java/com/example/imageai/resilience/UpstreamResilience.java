@@ -0,0 +1,328 @@
+package com.example.imageai.resilience;
+
+import com.example.imageai.limit.UpstreamLimiter;
+import com.example.imageai.metrics.AnalysisTracing;
+import com.example.imageai.service.Upstream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.publisher.SynchronousSink;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+import reactor.util.retry.Retry;
+import reactor.util.retry.RetryBackoffSpec;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 上游调用容错
+ * 在限流器之外为每次上游调用加上熔断、对冲和重试：
+ * <ul>
+ *     <li>熔断：超时、网络错误和5xx计为失败，失败率过高时打开熔断器，直接拒绝调用</li>
+ *     <li>对冲：调用超过近期p95延迟仍未返回时再发一次，先返回的结果生效，另一个被取消</li>
+ *     <li>重试：可重试的失败按指数退避加随机抖动重试；限流和熔断不重试</li>
+ * </ul>
+ * 流式调用只在收到首个数据之前重试，不做对冲
+ */
+@Slf4j
+@Component
+public class UpstreamResilience {
+
+    private final UpstreamLimiter upstreamLimiter;
+
+    private final Map<Upstream, UpstreamState> states = new EnumMap<>(Upstream.class);
+
+    private final RetryBackoffSpec retrySpec;
+
+    private final boolean hedgeEnabled;
+
+    private final Duration hedgeMinDelay;
+
+    public UpstreamResilience(UpstreamLimiter upstreamLimiter,
+                              @Value("${upstream.retry.max-retries:2}") int maxRetries,
+                              @Value("${upstream.retry.backoff:200ms}") Duration retryBackoff,
+                              @Value("${upstream.hedge.enabled:true}") boolean hedgeEnabled,
+                              @Value("${upstream.hedge.percentile:0.95}") double hedgePercentile,
+                              @Value("${upstream.hedge.min-delay:100ms}") Duration hedgeMinDelay,
+                              @Value("${upstream.hedge.min-samples:20}") int hedgeMinSamples,
+                              @Value("${upstream.circuit.window-size:50}") int circuitWindowSize,
+                              @Value("${upstream.circuit.min-calls:20}") int circuitMinCalls,
+                              @Value("${upstream.circuit.failure-rate:0.5}") double circuitFailureRate,
+                              @Value("${upstream.circuit.open-duration:30s}") Duration circuitOpenDuration,
+                              @Value("${upstream.circuit.half-open-calls:3}") int circuitHalfOpenCalls) {
+        this.upstreamLimiter = upstreamLimiter;
+        this.retrySpec = Retry.backoff(maxRetries, retryBackoff)
+                .jitter(0.5)
+                .filter(UpstreamResilience::isFailure)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+        this.hedgeEnabled = hedgeEnabled;
+        this.hedgeMinDelay = hedgeMinDelay;
+        for (Upstream upstream : Upstream.values()) {
+            states.put(upstream, new UpstreamState(
+                    new CircuitBreaker(circuitWindowSize, circuitMinCalls, circuitFailureRate,
+                            circuitOpenDuration, circuitHalfOpenCalls),
+                    new LatencyTracker(512, hedgePercentile, hedgeMinSamples)));
+        }
+    }
+
+    /**
+     * 执行上游调用
+     * @param upstream 上游服务
+     * @param call 单次调用，重试和对冲时会被多次订阅
+     * @return 调用结果
+     */
+    public <T> Mono<T> execute(Upstream upstream, Supplier<Mono<T>> call) {
+        return execute(upstream, call, value -> {
+        });
+    }
+
+    /**
+     * 执行上游调用，结果持有需要显式释放的资源（如池化缓冲区）
+     * 原请求和对冲请求几乎同时返回时，落选一方的结果由release释放（firstWithValue会直接丢弃它，不经过discard钩子）；
+     * 被取消之后才产生的结果由调用方以doOnDiscard释放
+     * @param upstream 上游服务
+     * @param call 单次调用，重试和对冲时会被多次订阅
+     * @param release 释放落选的结果
+     * @return 调用结果
+     */
+    public <T> Mono<T> execute(Upstream upstream, Supplier<Mono<T>> call, Consumer<? super T> release) {
+        UpstreamState state = states.get(upstream);
+        return Mono.deferContextual(context -> Mono.defer(() -> hedged(upstream, state, call, release))
+                .retryWhen(retrySpec.doBeforeRetry(signal -> {
+                    state.retries.increment();
+                    AnalysisTracing.tag(context, AnalysisTracing.RETRY_COUNT, signal.totalRetries() + 1);
+                    log.warn("{}调用失败，第{}次重试: {}", upstream, signal.totalRetries() + 1, signal.failure().getMessage());
+                })));
+    }
+
+    /**
+     * 执行流式上游调用，收到首个数据后不再重试
+     * @param upstream 上游服务
+     * @param call 单次调用
+     * @return 调用结果
+     */
+    public <T> Flux<T> executeMany(Upstream upstream, Supplier<Flux<T>> call) {
+        UpstreamState state = states.get(upstream);
+        return Flux.deferContextual(context -> {
+            AtomicBoolean emitted = new AtomicBoolean();
+            return attemptMany(upstream, state, call)
+                    .doOnNext(value -> emitted.set(true))
+                    .retryWhen(retrySpec
+                            .filter(e -> !emitted.get() && isFailure(e))
+                            .doBeforeRetry(signal -> {
+                                state.retries.increment();
+                                AnalysisTracing.tag(context, AnalysisTracing.RETRY_COUNT, signal.totalRetries() + 1);
+                                log.warn("{}流式调用失败，第{}次重试: {}", upstream, signal.totalRetries() + 1,
+                                        signal.failure().getMessage());
+                            }));
+        });
+    }
+
+    /**
+     * 各上游的容错统计
+     */
+    public List<ResilienceStats> stats() {
+        return Arrays.stream(Upstream.values())
+                .map(upstream -> {
+                    UpstreamState state = states.get(upstream);
+                    long hedgeDelay = hedgeDelayNanos(state);
+                    return new ResilienceStats(upstream,
+                            state.breaker.state().name(),
+                            state.breaker.failureRate(),
+                            hedgeDelay < 0 ? -1 : Duration.ofNanos(hedgeDelay).toMillis(),
+                            state.calls.sum(),
+                            state.retries.sum(),
+                            state.hedges.sum(),
+                            state.hedgeWins.sum(),
+                            state.shortCircuited.sum());
+                })
+                .toList();
+    }
+
+    /**
+     * 原请求超过对冲延迟仍未返回时发出对冲请求；原请求在此之前失败则不再对冲，直接交给重试
+     */
+    private <T> Mono<T> hedged(Upstream upstream, UpstreamState state, Supplier<Mono<T>> call,
+                               Consumer<? super T> release) {
+        long hedgeDelay = hedgeEnabled ? hedgeDelayNanos(state) : -1;
+        if (hedgeDelay < 0) {
+            return attempt(upstream, state, call);
+        }
+        Sinks.One<Boolean> primaryFailed = Sinks.one();
+        AtomicBoolean claimed = new AtomicBoolean();
+        Mono<Tuple2<T, Boolean>> primary = attempt(upstream, state, call)
+                .doOnError(e -> primaryFailed.tryEmitValue(true))
+                .handle((value, sink) -> claim(claimed, value, false, sink, release));
+        Mono<Tuple2<T, Boolean>> hedge = Mono.delay(Duration.ofNanos(hedgeDelay))
+                .flux()
+                .takeUntilOther(primaryFailed.asMono())
+                .next()
+                .flatMap(tick -> Mono.deferContextual(context -> {
+                    state.hedges.increment();
+                    AnalysisTracing.tag(context, AnalysisTracing.HEDGED, true);
+                    log.info("{}调用超过{} ms未返回，发出对冲请求", upstream, Duration.ofNanos(hedgeDelay).toMillis());
+                    return attempt(upstream, state, call)
+                            .<Tuple2<T, Boolean>>handle((value, sink) -> claim(claimed, value, true, sink, release));
+                }));
+        return Mono.firstWithValue(primary, hedge)
+                .doOnNext(result -> {
+                    if (result.getT2()) {
+                        state.hedgeWins.increment();
+                    }
+                })
+                .map(Tuple2::getT1)
+                // 都没有返回值：都为空时结果为空，否则取原请求的异常
+                .onErrorResume(NoSuchElementException.class, e -> e.getCause() == null
+                        ? Mono.empty() : Mono.error(unwrapFirstFailure(e)));
+    }
+
+    /**
+     * 先返回的一方生效，另一方的结果在进入firstWithValue之前释放
+     */
+    private static <T> void claim(AtomicBoolean claimed, T value, boolean hedge,
+                                  SynchronousSink<Tuple2<T, Boolean>> sink, Consumer<? super T> release) {
+        if (claimed.compareAndSet(false, true)) {
+            sink.next(Tuples.of(value, hedge));
+        } else {
+            release.accept(value);
+        }
+    }
+
+    private <T> Mono<T> attempt(Upstream upstream, UpstreamState state, Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            long now = System.nanoTime();
+            if (!state.breaker.tryAcquire(now)) {
+                state.shortCircuited.increment();
+                return Mono.error(new UpstreamUnavailableException(upstream, state.breaker.remainingOpen(now)));
+            }
+            state.calls.increment();
+            AtomicBoolean recorded = new AtomicBoolean();
+            // 延迟从取得限流许可后开始计算，不包含排队时间
+            return upstreamLimiter.execute(upstream, () -> {
+                        long start = System.nanoTime();
+                        return call.get().doOnSuccess(value -> state.latency.record(System.nanoTime() - start));
+                    })
+                    .doOnSuccess(value -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            state.breaker.onSuccess();
+                        }
+                    })
+                    .doOnError(e -> recordFailure(state, recorded, e))
+                    .doOnCancel(() -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            state.breaker.onIgnored();
+                        }
+                    });
+        });
+    }
+
+    private <T> Flux<T> attemptMany(Upstream upstream, UpstreamState state, Supplier<Flux<T>> call) {
+        return Flux.defer(() -> {
+            long now = System.nanoTime();
+            if (!state.breaker.tryAcquire(now)) {
+                state.shortCircuited.increment();
+                return Flux.error(new UpstreamUnavailableException(upstream, state.breaker.remainingOpen(now)));
+            }
+            state.calls.increment();
+            AtomicBoolean recorded = new AtomicBoolean();
+            return upstreamLimiter.executeMany(upstream, call)
+                    .doOnComplete(() -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            state.breaker.onSuccess();
+                        }
+                    })
+                    .doOnError(e -> recordFailure(state, recorded, e))
+                    .doOnCancel(() -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            state.breaker.onIgnored();
+                        }
+                    });
+        });
+    }
+
+    private static void recordFailure(UpstreamState state, AtomicBoolean recorded, Throwable e) {
+        if (!recorded.compareAndSet(false, true)) {
+            return;
+        }
+        if (isFailure(e)) {
+            state.breaker.onFailure(System.nanoTime());
+        } else {
+            state.breaker.onIgnored();
+        }
+    }
+
+    private long hedgeDelayNanos(UpstreamState state) {
+        long percentile = state.latency.percentileNanos();
+        return percentile < 0 ? -1 : Math.max(percentile, hedgeMinDelay.toNanos());
+    }
+
+    /**
+     * 是否为上游故障：超时、网络错误和5xx。这类失败计入熔断统计并且可以重试；
+     * 4xx、限流、熔断和响应解析错误都不属于此类
+     */
+    private static boolean isFailure(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof UpstreamUnavailableException) {
+                return false;
+            }
+            if (t instanceof TimeoutException || t instanceof WebClientRequestException) {
+                return true;
+            }
+            if (t instanceof WebClientResponseException response) {
+                return response.getStatusCode().is5xxServerError();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 原请求和对冲请求都失败时取原请求的异常
+     */
+    private static Throwable unwrapFirstFailure(NoSuchElementException e) {
+        // 各来源的异常以组合异常的形式作为cause
+        for (Throwable cause : Exceptions.unwrapMultiple(e.getCause())) {
+            if (cause != null && !(cause instanceof NoSuchElementException)) {
+                return cause;
+            }
+        }
+        return e;
+    }
+
+    private static final class UpstreamState {
+
+        private final CircuitBreaker breaker;
+
+        private final LatencyTracker latency;
+
+        private final LongAdder calls = new LongAdder();
+
+        private final LongAdder retries = new LongAdder();
+
+        private final LongAdder hedges = new LongAdder();
+
+        private final LongAdder hedgeWins = new LongAdder();
+
+        private final LongAdder shortCircuited = new LongAdder();
+
+        UpstreamState(CircuitBreaker breaker, LatencyTracker latency) {
+            this.breaker = breaker;
+            this.latency = latency;
+        }
+    }
+}
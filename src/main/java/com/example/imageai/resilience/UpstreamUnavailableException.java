@@ -0,0 +1,39 @@
+package com.example.imageai.resilience;
+
+import com.example.imageai.service.Upstream;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * 上游熔断
+ * 熔断器打开期间直接抛出，不再发起调用；调用方应向客户端返回503和Retry-After
+ */
+@Getter
+public class UpstreamUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Upstream upstream;
+
+    private final Duration retryAfter;
+
+    public UpstreamUnavailableException(Upstream upstream, Duration retryAfter) {
+        super(upstream + "暂时不可用，已熔断");
+        this.upstream = upstream;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * 在异常链中查找熔断异常
+     */
+    public static Optional<UpstreamUnavailableException> find(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof UpstreamUnavailableException unavailable) {
+                return Optional.of(unavailable);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -1,5 +1,20 @@
 package com.example.imageai.service;
 
+import com.example.imageai.audio.AudioSniffer;
+import com.example.imageai.audio.PhraseAudioStore;
+import com.example.imageai.audio.VoiceSelector;
+import com.example.imageai.audio.WavUtils;
+import com.example.imageai.cache.AnalysisCache;
+import com.example.imageai.dto.AudioFormat;
+import com.example.imageai.metrics.AnalysisMetrics;
+import com.example.imageai.metrics.AnalysisTracing;
+import com.example.imageai.metrics.Payload;
+import com.example.imageai.metrics.Stage;
+import com.example.imageai.resilience.UpstreamResilience;
+import com.example.imageai.limit.UpstreamThrottledException;
+import com.example.imageai.resilience.UpstreamUnavailableException;
+import com.example.imageai.util.TextChunker;
+import com.example.imageai.util.TextNormalizer;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
@@ -7,12 +22,16 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.net.URLEncoder;
 import java.time.Duration;
 import java.util.Base64;
+import java.util.List;
 import java.util.Map;
 
 @Slf4j
@@ -20,6 +39,14 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class AliTtsService {
 
+    private static final int MOCK_AUDIO_SECONDS = 2;
+
+    /**
+     * 模拟音频：16kHz单声道的静音WAV
+     * 只作为模板，不直接交给调用方：返回的数组会进入缓存、语音存储和响应体，被改写后会影响之后所有降级请求
+     */
+    private static final byte[] MOCK_AUDIO = WavUtils.silence(16000, MOCK_AUDIO_SECONDS);
+
     @Value("${ali.tts.api.key:your-api-key}")
     private String apiKey;
     
@@ -29,31 +56,37 @@ public class AliTtsService {
     @Value("${ali.tts.app.key:your-app-key}")
     private String appKey;
 
+    /**
+     * TTS失败时是否返回模拟音频（静音WAV），仅用于本地演示；默认关闭，失败以502返回给调用方
+     */
+    @Value("${ali.tts.mock-fallback:false}")
+    private boolean mockFallback;
+
+    /**
+     * 单次TTS请求的字数上限，超过时分段合成
+     */
+    @Value("${ali.tts.max-chars:300}")
+    private int maxChars;
+
+    @Value("${ali.tts.chunk-concurrency:4}")
+    private int chunkConcurrency;
+
+    private final UpstreamResilience upstreamResilience;
+
+    private final AnalysisCache analysisCache;
+
+    private final AnalysisMetrics metrics;
+
+    private final AnalysisTracing tracing;
+
+    private final VoiceSelector voiceSelector;
+
+    private final PhraseAudioStore phraseAudioStore;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
     
-    private final WebClient webClient = WebClient.builder()
-            .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(50 * 1024 * 1024)) // 50MB
-            .build();
-
-    // 阿里云TTS支持的音色列表
-    private static final String[] VOICE_OPTIONS = {
-        "xiaoyun",    // 小云，女声，标准
-        "xiaogang",   // 小刚，男声，标准  
-        "xiaomeng",   // 小萌，女童声，活泼
-        "xiaoxue",    // 小雪，女声，温柔
-        "xiaofeng",   // 小峰，男声，成熟
-        "xiaoli",     // 小丽，女声，甜美
-        "ruoxi",      // 若汐，女声，知性
-        "siqi",       // 思琪，女声，温暖
-        "sijing",     // 思晶，女声，严肃
-        "aijia",      // 艾佳，女声，清晰
-        "aicheng",    // 艾诚，男声，浑厚
-        "aida",       // 艾达，男声，标准
-        "aining",     // 艾宁，女声，甜美
-        "ailun"       // 艾伦，男声，成熟
-    };
-
-    private final java.util.Random random = new java.util.Random();
+    @Qualifier("ttsWebClient")
+    private final WebClient webClient;
 
     /**
      * 使用阿里云TTS生成语音
@@ -61,253 +94,239 @@ public class AliTtsService {
      * @return 语音字节数组
      */
     public byte[] generateSpeech(String text) {
-        try {
-            // 清理文本但保留必要的空格和标点
-            String cleanText = cleanTextForTts(text);
-            
-            // 随机选择音色
-            String selectedVoice = getRandomVoice();
-            
-            log.info("正在调用阿里云TTS生成语音，原始文本长度: {}, 清理后长度: {}, 使用音色: {}", 
-                    text.length(), cleanText.length(), selectedVoice);
-            
-            // 构建请求体 - 按照阿里云TTS的标准格式，添加随机音色
-            Map<String, Object> requestBody = Map.of(
-                "appkey", appKey,
-                "text", cleanText,
-                "token", apiKey,
-                "format", "wav"  // 使用wav格式，更兼容
-//                "voice", selectedVoice  // 随机选择的音色
-            );
-
-            // 直接获取二进制响应数据
-            byte[] responseBytes = webClient.post()
-                    .uri(apiUrl)
-                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .bodyToMono(byte[].class)
-                    .timeout(Duration.ofSeconds(30))
-                    .block();
-
-            if (responseBytes == null || responseBytes.length == 0) {
-                throw new RuntimeException("阿里云TTS返回空响应");
-            }
+        return generateSpeech(text, AudioFormat.WAV);
+    }
+
+    /**
+     * 使用阿里云TTS生成指定格式的语音
+     * @param text 要转换的文本
+     * @param audioFormat 语音格式
+     * @return 语音字节数组
+     */
+    public byte[] generateSpeech(String text, AudioFormat audioFormat) {
+        return generateSpeech(text, audioFormat, null);
+    }
+
+    /**
+     * 使用阿里云TTS以指定音色生成语音
+     * @param text 要转换的文本
+     * @param audioFormat 语音格式
+     * @param voice 音色，为null时按文本内容选择
+     * @return 语音字节数组
+     */
+    public byte[] generateSpeech(String text, AudioFormat audioFormat, String voice) {
+        return generateSpeechAsync(text, audioFormat, voice).block();
+    }
+
+    /**
+     * 使用阿里云TTS生成语音（非阻塞）
+     * @param text 要转换的文本
+     * @return WAV格式的语音字节数组
+     */
+    public Mono<byte[]> generateSpeechAsync(String text) {
+        return generateSpeechAsync(text, AudioFormat.WAV);
+    }
+
+    /**
+     * 使用阿里云TTS生成指定格式的语音（非阻塞）
+     * 等待TTS响应期间不占用任何线程。超过单次请求字数上限的文本按句切分，
+     * 各段并行合成后按顺序拼接为一个文件，总耗时接近最慢的一段。
+     * TTS失败降级时返回的模拟音频固定为WAV格式
+     * @param text 要转换的文本
+     * @param audioFormat 语音格式，由TTS直接生成，不在本地转码
+     * @return 语音字节数组
+     */
+    public Mono<byte[]> generateSpeechAsync(String text, AudioFormat audioFormat) {
+        return generateSpeechAsync(text, audioFormat, null);
+    }
+
+    /**
+     * 使用阿里云TTS以指定音色生成语音（非阻塞）
+     * 文本以预合成的常用短语开头时，短语部分直接使用预合成的语音，只合成其余文本
+     * @param text 要转换的文本
+     * @param audioFormat 语音格式，由TTS直接生成，不在本地转码
+     * @param voice 音色，为null时按文本内容选择，相同文本总是使用相同音色
+     * @return 语音字节数组
+     */
+    public Mono<byte[]> generateSpeechAsync(String text, AudioFormat audioFormat, String voice) {
+        // 清理文本但保留必要的空格和标点
+        String cleanText = metrics.time(Stage.TEXT_CLEAN, () -> cleanTextForTts(text));
+        String selectedVoice = voice != null ? voice : voiceSelector.forContent(cleanText);
+        PhraseAudioStore.Match phrase = phraseAudioStore.match(cleanText, selectedVoice, audioFormat.value());
+        String rest = phrase == null ? cleanText : cleanText.substring(phrase.phrase().length()).trim();
+        List<String> chunks = TextChunker.chunk(rest, maxChars);
 
-            // 检查是否返回了错误信息（JSON格式）
-            if (responseBytes.length > 0 && responseBytes[0] == '{') {
-                // 可能是JSON错误响应
-                String errorResponse = new String(responseBytes);
-                try {
-                    JsonNode responseNode = objectMapper.readTree(errorResponse);
-                    if (responseNode.has("message")) {
-                        throw new RuntimeException("阿里云TTS错误: " + responseNode.get("message").asText());
-                    }
-                    if (responseNode.has("error")) {
-                        throw new RuntimeException("阿里云TTS错误: " + responseNode.get("error").asText());
-                    }
-                } catch (Exception jsonEx) {
-                    // 如果JSON解析失败，说明可能真的是音频数据
-                    log.debug("响应不是JSON格式，假设为音频数据");
+        return tracing.span("tts.generate", span -> {
+            span.lowCardinalityKeyValue(AnalysisTracing.VOICE, selectedVoice)
+                    .lowCardinalityKeyValue("format", audioFormat.value())
+                    .highCardinalityKeyValue("text.length", String.valueOf(cleanText == null ? 0 : cleanText.length()))
+                    .highCardinalityKeyValue("chunks", String.valueOf(chunks.size()));
+            Mono<byte[]> audio = switch (chunks.size()) {
+                case 0 -> phrase != null ? Mono.just(phrase.audio()) : Mono.error(new RuntimeException("TTS文本为空"));
+                case 1 -> synthesize(chunks.get(0), audioFormat, selectedVoice);
+                default -> synthesizeChunks(chunks, audioFormat, selectedVoice);
+            };
+            if (phrase != null) {
+                span.highCardinalityKeyValue("phrase.hit", "true");
+                log.info("文本以常用短语开头，使用预合成语音: {}", phrase.phrase());
+                if (!chunks.isEmpty()) {
+                    audio = audio.map(restAudio -> concatAudio(List.of(phrase.audio(), restAudio), audioFormat));
                 }
             }
+            return audio
+                    // 限流或熔断时不降级为模拟音频，交由调用方返回429/503
+                    .onErrorResume(e -> mockFallback && UpstreamThrottledException.find(e).isEmpty()
+                            && UpstreamUnavailableException.find(e).isEmpty(), e -> {
+                        log.error("阿里云TTS语音生成失败: ", e);
 
-            // 验证音频数据的合法性
-            if (isValidAudioData(responseBytes)) {
-                log.info("TTS语音生成完成，音频大小: {} bytes", responseBytes.length);
-                return responseBytes;
-            } else {
-                log.warn("收到的数据不像是有效的音频文件");
-                throw new RuntimeException("接收到的数据不是有效的音频格式");
-            }
+                        // 如果真实TTS服务不可用，返回一个示例音频数据
+                        log.warn("使用模拟音频数据");
+                        metrics.mockAudioFallback();
+                        span.highCardinalityKeyValue("mock.fallback", "true");
+                        return Mono.fromCallable(() -> generateMockAudio(text, selectedVoice));
+                    })
+                    .onErrorMap(e -> UpstreamThrottledException.find(e).isEmpty() && UpstreamUnavailableException.find(e).isEmpty()
+                            && UpstreamFailedException.find(e).isEmpty(), e -> new UpstreamFailedException(Upstream.TTS, e))
+                    .doOnNext(audioBytes -> span.highCardinalityKeyValue("audio.bytes", String.valueOf(audioBytes.length)));
+        });
+    }
 
-        } catch (Exception e) {
-            log.error("阿里云TTS语音生成失败: ", e);
-            
-            // 如果真实TTS服务不可用，返回一个示例音频数据
-            log.warn("使用模拟音频数据");
-            return generateMockAudio(text);
-        }
+    /**
+     * 分段并行合成，并发数受ali.tts.chunk-concurrency限制，结果按原顺序拼接
+     * 任意一段失败则整体失败
+     */
+    private Mono<byte[]> synthesizeChunks(List<String> chunks, AudioFormat audioFormat, String voice) {
+        log.info("文本过长，分{}段合成语音", chunks.size());
+        return Flux.fromIterable(chunks)
+                .flatMapSequential(chunk -> synthesize(chunk, audioFormat, voice), chunkConcurrency)
+                .collectList()
+                .map(parts -> concatAudio(parts, audioFormat))
+                .doOnNext(audioBytes -> log.info("分段语音拼接完成，段数: {}, 音频大小: {} bytes",
+                        chunks.size(), audioBytes.length));
     }
 
     /**
-     * 随机选择一个音色
-     * @return 随机选择的音色名称
+     * 合成一段文本，先查语音缓存
+     * @param text 已清理、不超过字数上限的文本
+     * @param audioFormat 语音格式
+     * @param voice 音色
+     * @return 语音字节数组
      */
-    private String getRandomVoice() {
-        int index = random.nextInt(VOICE_OPTIONS.length);
-        String selectedVoice = VOICE_OPTIONS[index];
-        log.debug("从{}个音色中随机选择了: {} (索引: {})", VOICE_OPTIONS.length, selectedVoice, index);
-        return selectedVoice;
+    Mono<byte[]> synthesize(String text, AudioFormat audioFormat, String voice) {
+        String cacheKey = AnalysisCache.audioKey(text, voice, audioFormat.value());
+
+        // 构建请求体 - 按照阿里云TTS的标准格式
+        Map<String, Object> requestBody = Map.of(
+            "appkey", appKey,
+            "text", text,
+            "token", apiKey,
+            "format", audioFormat.value(),
+            "voice", voice
+        );
+
+        // 直接获取二进制响应数据
+        Mono<byte[]> request = metrics.time(Stage.TTS, upstreamResilience.execute(Upstream.TTS, () -> webClient.post()
+                        .uri(apiUrl)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .bodyValue(requestBody)
+                        .retrieve()
+                        .bodyToMono(byte[].class)
+                        .timeout(Duration.ofSeconds(30))))
+                .doOnSubscribe(s -> log.info("正在调用阿里云TTS生成语音，文本长度: {}, 格式: {}, 使用音色: {}",
+                        text.length(), audioFormat.value(), voice))
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("阿里云TTS返回空响应")))
+                .map(this::validateAudioResponse)
+                // 只缓存真实的TTS结果，不缓存模拟音频
+                .doOnNext(audioBytes -> analysisCache.putAudio(cacheKey, audioBytes));
+
+        return Mono.deferContextual(context -> analysisCache.getAudio(cacheKey)
+                .doOnNext(audioBytes -> {
+                    AnalysisTracing.tag(context, "cache.hit", true);
+                    log.info("TTS语音命中缓存，音频大小: {} bytes", audioBytes.length);
+                })
+                .switchIfEmpty(request));
     }
 
     /**
-     * 清理文本用于TTS转换
-     * @param text 原始文本
-     * @return 清理后的文本
+     * 拼接分段合成的语音
+     * WAV需要合并数据块并重写文件头；MP3由独立的帧组成，直接首尾相接即可连续播放
      */
-    private String cleanTextForTts(String text) {
-        if (text == null || text.isEmpty()) {
-            return text;
+    private static byte[] concatAudio(List<byte[]> parts, AudioFormat audioFormat) {
+        if (audioFormat == AudioFormat.WAV) {
+            return WavUtils.concat(parts);
         }
-        
-        // 替换换行符为空格
-        String cleaned = text.replace("\n", " ");
-        
-        // 替换多个连续空格为单个空格
-        cleaned = cleaned.replaceAll("\\s+", " ");
-        
-        // 移除一些可能影响TTS的特殊字符，但保留基本标点
-        cleaned = cleaned.replaceAll("[\\x00-\\x08\\x0B\\x0C\\x0E-\\x1F\\x7F]", "");
-        
-        // 限制长度，避免TTS请求过长
-        if (cleaned.length() > 500) {
-            cleaned = cleaned.substring(0, 500) + "...";
-            log.info("文本过长，已截断到500字符");
+        int total = parts.stream().mapToInt(part -> part.length).sum();
+        byte[] audio = new byte[total];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, audio, offset, part.length);
+            offset += part.length;
         }
-        
-        return cleaned.trim();
+        return audio;
     }
 
     /**
-     * 验证是否为有效的音频数据
-     * @param data 音频数据字节数组
-     * @return 是否为有效的音频数据
+     * 校验TTS响应，排除JSON错误信息和非音频数据
+     * @param responseBytes TTS响应字节数组
+     * @return 校验通过的音频数据
      */
-    private boolean isValidAudioData(byte[] data) {
-        if (data == null || data.length < 8) {
-            return false;
-        }
-        
-        // 检查WAV文件头 "RIFF"
-        if (data.length >= 4 && 
-            data[0] == 'R' && data[1] == 'I' && data[2] == 'F' && data[3] == 'F') {
-            return true;
+    private byte[] validateAudioResponse(byte[] responseBytes) {
+        if (responseBytes.length == 0) {
+            throw new RuntimeException("阿里云TTS返回空响应");
         }
-        
-        // 检查MP3文件头
-        if (data.length >= 3 && 
-            ((data[0] & 0xFF) == 0xFF) && ((data[1] & 0xE0) == 0xE0)) {
-            return true;
-        }
-        
-        // 检查MP3 ID3 标签
-        if (data.length >= 3 && 
-            data[0] == 'I' && data[1] == 'D' && data[2] == '3') {
-            return true;
+
+        // 检查是否返回了错误信息（JSON格式），只看文件头，音频数据不做任何解析
+        AudioFormat detected = AudioSniffer.format(responseBytes);
+        if (detected == null && AudioSniffer.looksLikeJson(responseBytes)) {
+            // 可能是JSON错误响应
+            String errorMessage = null;
+            try {
+                JsonNode responseNode = objectMapper.readTree(responseBytes);
+                if (responseNode.has("message")) {
+                    errorMessage = responseNode.get("message").asText();
+                } else if (responseNode.has("error")) {
+                    errorMessage = responseNode.get("error").asText();
+                }
+            } catch (Exception jsonEx) {
+                // 如果JSON解析失败，说明可能真的是音频数据
+                log.debug("响应不是JSON格式，假设为音频数据");
+            }
+            if (errorMessage != null) {
+                throw new RuntimeException("阿里云TTS错误: " + errorMessage);
+            }
         }
-        
-        // 如果数据大小合理（>1KB 且 <10MB），假设是有效的音频数据
-        if (data.length > 1024 && data.length < 10 * 1024 * 1024) {
-            log.debug("无法识别音频格式，但数据大小合理，假设为有效音频");
-            return true;
+
+        // 验证音频数据的合法性
+        if (detected != null || AudioSniffer.isAudio(responseBytes)) {
+            log.info("TTS语音生成完成，音频大小: {} bytes", responseBytes.length);
+            metrics.recordPayload(Payload.AUDIO, responseBytes.length);
+            return responseBytes;
+        } else {
+            log.warn("收到的数据不像是有效的音频文件");
+            throw new RuntimeException("接收到的数据不是有效的音频格式");
         }
-        
-        return false;
     }
 
     /**
-     * 验证字符串是否为有效的Base64编码
-     * @param str 待验证的字符串
-     * @return 是否为有效的Base64编码
+     * 清理文本用于TTS转换
+     * 去掉控制字符，合并连续空白，单次遍历完成，文本已经规范时不分配新字符串
+     * @param text 原始文本
+     * @return 清理后的文本
      */
-    private boolean isValidBase64(String str) {
-        if (str == null || str.isEmpty()) {
-            return false;
-        }
-        
-        // Base64编码只能包含以下字符：A-Z, a-z, 0-9, +, /, =
-        // 长度必须是4的倍数
-        if (str.length() % 4 != 0) {
-            return false;
-        }
-        
-        // 检查是否只包含Base64字符
-        return str.matches("^[A-Za-z0-9+/]*={0,2}$");
+    private String cleanTextForTts(String text) {
+        // 不截断，超过单次请求上限的文本由调用方分段合成
+        return TextNormalizer.normalize(text);
     }
 
     /**
      * 生成模拟音频数据（用于测试）
-     * 生成一个简单的WAV文件，包含正确的文件头，这样前端可以识别和播放
+     * 一个简单的WAV文件，包含正确的文件头，这样前端可以识别和播放。
+     * 内容固定，每次复制模板，不再重新生成文件头和数据
      */
-    private byte[] generateMockAudio(String text) {
-        // 创建一个简单的WAV文件头 + 静音数据
-        // 这样前端就能正确识别为音频文件
-        
-        int sampleRate = 16000; // 采样率
-        int duration = 2; // 2秒静音
-        int numSamples = sampleRate * duration;
-        int dataSize = numSamples * 2; // 16位音频，每个样本2字节
-        
-        // WAV文件头（44字节）
-        byte[] header = new byte[44];
-        int index = 0;
-        
-        // RIFF头
-        header[index++] = 'R'; header[index++] = 'I'; header[index++] = 'F'; header[index++] = 'F';
-        
-        // 文件大小 - 8（小端序）
-        int fileSize = 36 + dataSize;
-        header[index++] = (byte)(fileSize & 0xFF);
-        header[index++] = (byte)((fileSize >> 8) & 0xFF);
-        header[index++] = (byte)((fileSize >> 16) & 0xFF);
-        header[index++] = (byte)((fileSize >> 24) & 0xFF);
-        
-        // WAVE格式
-        header[index++] = 'W'; header[index++] = 'A'; header[index++] = 'V'; header[index++] = 'E';
-        
-        // fmt子块
-        header[index++] = 'f'; header[index++] = 'm'; header[index++] = 't'; header[index++] = ' ';
-        
-        // fmt子块大小（16）
-        header[index++] = 16; header[index++] = 0; header[index++] = 0; header[index++] = 0;
-        
-        // 音频格式（PCM = 1）
-        header[index++] = 1; header[index++] = 0;
-        
-        // 声道数（单声道 = 1）
-        header[index++] = 1; header[index++] = 0;
-        
-        // 采样率
-        header[index++] = (byte)(sampleRate & 0xFF);
-        header[index++] = (byte)((sampleRate >> 8) & 0xFF);
-        header[index++] = (byte)((sampleRate >> 16) & 0xFF);
-        header[index++] = (byte)((sampleRate >> 24) & 0xFF);
-        
-        // 字节率
-        int byteRate = sampleRate * 2; // 16位单声道
-        header[index++] = (byte)(byteRate & 0xFF);
-        header[index++] = (byte)((byteRate >> 8) & 0xFF);
-        header[index++] = (byte)((byteRate >> 16) & 0xFF);
-        header[index++] = (byte)((byteRate >> 24) & 0xFF);
-        
-        // 块对齐
-        header[index++] = 2; header[index++] = 0;
-        
-        // 每个样本的位数（16位）
-        header[index++] = 16; header[index++] = 0;
-        
-        // data子块
-        header[index++] = 'd'; header[index++] = 'a'; header[index++] = 't'; header[index++] = 'a';
-        
-        // data子块大小
-        header[index++] = (byte)(dataSize & 0xFF);
-        header[index++] = (byte)((dataSize >> 8) & 0xFF);
-        header[index++] = (byte)((dataSize >> 16) & 0xFF);
-        header[index++] = (byte)((dataSize >> 24) & 0xFF);
-        
-        // 创建完整的WAV文件
-        byte[] wavFile = new byte[44 + dataSize];
-        System.arraycopy(header, 0, wavFile, 0, 44);
-        
-        // 填充静音数据（全零）
-        // 音频数据部分已经是0（默认值），代表静音
-        
-        // 为了日志一致性，也显示一个随机选择的音色
-        String mockVoice = getRandomVoice();
-        log.info("生成模拟WAV音频文件，大小: {} bytes, 时长: {}秒, 模拟音色: {}, 文本: {}", 
-                wavFile.length, duration, mockVoice, text.substring(0, Math.min(text.length(), 50)));
-        
-        return wavFile;
+    private byte[] generateMockAudio(String text, String voice) {
+        log.info("生成模拟WAV音频文件，大小: {} bytes, 时长: {}秒, 模拟音色: {}, 文本: {}",
+                MOCK_AUDIO.length, MOCK_AUDIO_SECONDS, voice, text.substring(0, Math.min(text.length(), 50)));
+
+        return MOCK_AUDIO.clone();
     }
 } 
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.example.imageai.service;
+
+/**
+ * 图片分析链路的执行模式
+ */
+public enum AnalysisExecutionMode {
+
+    /**
+     * 全链路非阻塞，等待上游期间不占用线程
+     */
+    REACTIVE,
+
+    /**
+     * 阻塞调用，直接占用Servlet平台线程（原有模式）
+     */
+    PLATFORM,
+
+    /**
+     * 阻塞调用，运行在Java 21虚拟线程上，等待上游时虚拟线程挂起而不占用平台线程
+     */
+    VIRTUAL
+}
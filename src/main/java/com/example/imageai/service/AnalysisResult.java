@@ -0,0 +1,22 @@
+package com.example.imageai.service;
+
+import com.example.imageai.dto.AudioFormat;
+
+/**
+ * 图片分析链路的结果
+ * @param description 图片描述文本
+ * @param audioData 语音字节数组
+ * @param audioFormat 语音文件类型
+ */
+public record AnalysisResult(String description, byte[] audioData, String audioFormat) {
+
+    /**
+     * 按语音数据的文件头确定实际格式，TTS降级为模拟音频时可能与请求的格式不同
+     * @param description 图片描述文本
+     * @param audioData 语音字节数组
+     * @param requested 请求的语音格式
+     */
+    public static AnalysisResult of(String description, byte[] audioData, AudioFormat requested) {
+        return new AnalysisResult(description, audioData, AudioFormat.detect(audioData, requested).value());
+    }
+}
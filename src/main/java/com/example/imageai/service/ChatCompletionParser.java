@@ -0,0 +1,72 @@
+package com.example.imageai.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 通义千问OpenAI兼容格式响应的解析
+ */
+public final class ChatCompletionParser {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private ChatCompletionParser() {
+    }
+
+    /**
+     * 解析OpenAI兼容格式的响应
+     * @param response 响应JSON
+     * @return 模型返回的文本内容
+     */
+    public static String parse(String response) {
+        JsonNode responseNode;
+        try {
+            responseNode = OBJECT_MAPPER.readTree(response);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("通义千问API响应解析失败: " + e.getOriginalMessage(), e);
+        }
+
+        if (responseNode.has("choices") &&
+            responseNode.get("choices").isArray() &&
+            responseNode.get("choices").size() > 0) {
+
+            JsonNode firstChoice = responseNode.get("choices").get(0);
+            if (firstChoice.has("message") && firstChoice.get("message").has("content")) {
+                return firstChoice.get("message").get("content").asText();
+            }
+        }
+
+        // 检查是否有错误信息
+        if (responseNode.has("error")) {
+            JsonNode error = responseNode.get("error");
+            String errorMessage = error.has("message") ? error.get("message").asText() : "未知错误";
+            throw new RuntimeException("通义千问API错误: " + errorMessage);
+        }
+
+        throw new RuntimeException("通义千问API响应格式异常: " + response);
+    }
+
+    /**
+     * 解析流式响应中的一个增量片段
+     * @param data SSE事件数据
+     * @return 增量文本，没有内容时返回空字符串
+     */
+    public static String parseDelta(String data) {
+        JsonNode chunkNode;
+        try {
+            chunkNode = OBJECT_MAPPER.readTree(data);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("通义千问流式响应解析失败: " + e.getOriginalMessage(), e);
+        }
+
+        if (chunkNode.has("error")) {
+            JsonNode error = chunkNode.get("error");
+            String errorMessage = error.has("message") ? error.get("message").asText() : "未知错误";
+            throw new RuntimeException("通义千问API错误: " + errorMessage);
+        }
+
+        JsonNode content = chunkNode.path("choices").path(0).path("delta").path("content");
+        return content.isTextual() ? content.asText() : "";
+    }
+}
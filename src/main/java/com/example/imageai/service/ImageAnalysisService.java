@@ -1,18 +1,116 @@
 package com.example.imageai.service;
 
+import com.example.imageai.audio.AudioStore;
+import com.example.imageai.audio.VoiceSelector;
+import com.example.imageai.cache.AnalysisCache;
+import com.example.imageai.cache.NearDuplicateIndex;
+import com.example.imageai.dto.AudioFormat;
+import com.example.imageai.dto.AudioResponseMode;
+import com.example.imageai.dto.ImageAnalysisBatchItem;
+import com.example.imageai.dto.ImageAnalysisChunk;
 import com.example.imageai.dto.ImageAnalysisResponse;
+import com.example.imageai.image.DownloadedImage;
+import com.example.imageai.image.ImagePreprocessor;
+import com.example.imageai.image.PerceptualHash;
+import com.example.imageai.image.PreparedImage;
+import com.example.imageai.metrics.AnalysisMetrics;
+import com.example.imageai.metrics.AnalysisTracing;
+import com.example.imageai.metrics.Stage;
+import com.example.imageai.util.SentenceSplitter;
+import com.example.imageai.util.SingleFlight;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ImageAnalysisService {
 
+    /**
+     * 二进制语音接口路径前缀
+     */
+    public static final String AUDIO_PATH = "/api/v1/image/audio/";
+
     private final QianWenService qianWenService;
     private final AliTtsService aliTtsService;
     private final ImageDownloadService imageDownloadService;
+    private final AudioStore audioStore;
+    private final AnalysisCache analysisCache;
+    private final NearDuplicateIndex nearDuplicateIndex;
+    private final VoiceSelector voiceSelector;
+    private final ImagePreprocessor imagePreprocessor;
+    private final Scheduler analysisScheduler;
+    private final AnalysisMetrics metrics;
+    private final AnalysisTracing tracing;
+
+    private final SingleFlight<String, AnalysisResult> inFlightAnalyses = new SingleFlight<>();
+
+    private final SingleFlight<String, String> inFlightDescriptions = new SingleFlight<>();
+
+    @Value("${image.analysis.execution-mode:reactive}")
+    private AnalysisExecutionMode executionMode;
+
+    @Value("${image.analysis.source:url}")
+    private ImageSource imageSource;
+
+    /**
+     * 单次分析的期限，包含排队、重试和对冲，须小于spring.mvc.async.request-timeout
+     */
+    @Value("${image.analysis.timeout:110s}")
+    private Duration analysisTimeout;
+
+    @Value("${ali.tts.stream-concurrency:3}")
+    private int streamTtsConcurrency;
+
+    @Value("${image.batch.qianwen-concurrency:8}")
+    private int batchDescribeConcurrency;
+
+    @Value("${image.batch.tts-concurrency:8}")
+    private int batchTtsConcurrency;
+
+    /**
+     * 按配置的执行模式分析图片并生成语音
+     * 相同图片URL、相同语音格式和音色的并发请求合并为一次上游调用；
+     * 超过image.analysis.timeout时以TimeoutException结束，并取消仍在排队、重试或对冲的上游调用
+     * @param imageUrl 图片URL
+     * @param responseMode 语音数据的返回方式
+     * @param audioFormat 语音格式
+     * @param voice 音色，为null时按描述文本选择
+     * @return 分析结果和语音数据
+     */
+    public Mono<ImageAnalysisResponse> analyze(String imageUrl, AudioResponseMode responseMode, AudioFormat audioFormat,
+                                               String voice) {
+        return tracing.span("image.analysis", span -> {
+            span.lowCardinalityKeyValue("execution.mode", executionMode.name().toLowerCase())
+                    .lowCardinalityKeyValue("image.source", imageSource.name().toLowerCase())
+                    .lowCardinalityKeyValue("response.mode", String.valueOf(responseMode).toLowerCase())
+                    .lowCardinalityKeyValue("audio.format", audioFormat.value())
+                    .highCardinalityKeyValue("image.url", imageUrl);
+            return inFlightAnalyses.execute(audioFormat.value() + ":" + voice + ":" + imageUrl, () -> (switch (executionMode) {
+                        case REACTIVE -> analyzeAsync(imageUrl, audioFormat, voice);
+                        // 阻塞链路运行在虚拟线程上，block()时只挂起虚拟线程
+                        case VIRTUAL -> Mono.fromCallable(() -> analyzeBlocking(imageUrl, audioFormat, voice))
+                                .subscribeOn(analysisScheduler);
+                        // 阻塞链路直接运行在订阅线程（Servlet线程）上
+                        case PLATFORM -> Mono.fromCallable(() -> analyzeBlocking(imageUrl, audioFormat, voice));
+                    }).timeout(analysisTimeout))
+                    .map(r -> {
+                        span.highCardinalityKeyValue("description.length", String.valueOf(r.description().length()))
+                                .highCardinalityKeyValue("audio.bytes", String.valueOf(r.audioData().length));
+                        return toResponse(r, responseMode);
+                    });
+        });
+    }
 
     /**
      * 分析图片并生成语音
@@ -20,29 +118,272 @@ public class ImageAnalysisService {
      * @return 分析结果和语音数据
      */
     public ImageAnalysisResponse analyzeImageAndGenerateVoice(String imageUrl) {
+        return toResponse(analyzeBlocking(imageUrl, AudioFormat.WAV, null), AudioResponseMode.INLINE);
+    }
+
+    /**
+     * 分析图片并生成语音（阻塞调用）
+     */
+    private AnalysisResult analyzeBlocking(String imageUrl, AudioFormat audioFormat, String voice) {
         try {
-            // 1. 直接使用图片URL调用通义千问分析
-            log.info("正在调用通义千问分析图片URL: {}", imageUrl);
-            String description = qianWenService.analyzeImageWithUrl(imageUrl);
+            // 1. 调用通义千问分析图片
+            String description = describeBlocking(imageUrl);
             
             // 2. 调用阿里TTS生成语音
             log.info("正在生成语音，文本长度: {}", description.length());
-            byte[] audioBytes = aliTtsService.generateSpeech(description);
+            byte[] audioBytes = aliTtsService.generateSpeech(description, audioFormat, voice);
             
-            // 3. 构建响应
-            return ImageAnalysisResponse.builder()
-                    .success(true)
-                    .description(description)
-                    .audioData(java.util.Base64.getEncoder().encodeToString(audioBytes))
-                    .audioFormat("wav")
-                    .build();
+            return AnalysisResult.of(description, audioBytes, audioFormat);
                     
         } catch (Exception e) {
             log.error("图片分析和语音生成失败: ", e);
             throw new RuntimeException("处理失败: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * 分析图片并生成语音（非阻塞）
+     * 整条链路基于WebClient异步调用，等待通义千问和TTS响应期间不占用线程
+     * @param imageUrl 图片URL
+     * @return 分析结果和语音数据
+     */
+    public Mono<ImageAnalysisResponse> analyzeImageAndGenerateVoiceAsync(String imageUrl) {
+        return analyzeAsync(imageUrl, AudioFormat.WAV, null).map(r -> toResponse(r, AudioResponseMode.INLINE));
+    }
+
+    private Mono<AnalysisResult> analyzeAsync(String imageUrl, AudioFormat audioFormat, String voice) {
+        // 1. 调用通义千问分析图片
+        return describeAsync(imageUrl)
+                // 2. 调用阿里TTS生成语音
+                .flatMap(description -> {
+                    log.info("正在生成语音，文本长度: {}", description.length());
+                    return aliTtsService.generateSpeechAsync(description, audioFormat, voice)
+                            .map(audioBytes -> AnalysisResult.of(description, audioBytes, audioFormat));
+                })
+                .onErrorMap(e -> {
+                    log.error("图片分析和语音生成失败: ", e);
+                    return new RuntimeException("处理失败: " + e.getMessage(), e);
+                });
+    }
+
+    /**
+     * 按配置的图片来源调用通义千问分析图片（阻塞调用）
+     */
+    private String describeBlocking(String imageUrl) {
+        if (imageSource == ImageSource.DOWNLOAD) {
+            return describeDownloadedBlocking(imageUrl);
+        }
+        log.info("正在调用通义千问分析图片URL: {}", imageUrl);
+        return qianWenService.analyzeImageWithUrl(imageUrl);
+    }
+
+    /**
+     * 按配置的图片来源调用通义千问分析图片（非阻塞）
+     */
+    private Mono<String> describeAsync(String imageUrl) {
+        if (imageSource == ImageSource.DOWNLOAD) {
+            return describeDownloadedAsync(imageUrl);
+        }
+        return qianWenService.analyzeImageWithUrlAsync(imageUrl)
+                .doOnSubscribe(s -> log.info("正在调用通义千问分析图片URL: {}", imageUrl));
+    }
+
+    /**
+     * 下载图片，预处理后调用通义千问分析（阻塞调用）
+     * 以原图内容哈希查缓存，命中时连预处理也一并跳过；未命中时再按感知哈希查找近似重复的图片
+     */
+    private String describeDownloadedBlocking(String imageUrl) {
+        log.info("正在下载图片: {}", imageUrl);
+        try (DownloadedImage image = imageDownloadService.downloadImage(imageUrl)) {
+            String cacheKey = AnalysisCache.contentKey(image.data());
+            String cached = analysisCache.getDescription(cacheKey).block();
+            if (cached != null) {
+                log.info("图片内容命中缓存: {}", imageUrl);
+                return cached;
+            }
+            OptionalLong hash = perceptualHash(image);
+            String nearDuplicate = findNearDuplicate(hash, cacheKey, imageUrl).block();
+            if (nearDuplicate != null) {
+                return nearDuplicate;
+            }
+            try (PreparedImage prepared = metrics.time(Stage.PREPROCESS, () -> imagePreprocessor.preprocess(image))) {
+                log.info("正在调用通义千问分析图片，图片大小: {} bytes", prepared.size());
+                String description = qianWenService.analyzeImage(prepared.data(), prepared.mimeType());
+                remember(cacheKey, hash, description);
+                return description;
+            }
+        }
+    }
+
+    /**
+     * 下载图片，预处理后调用通义千问分析（非阻塞）
+     * 以原图内容哈希查缓存，命中时连预处理也一并跳过；未命中时再按感知哈希查找近似重复的图片。
+     * 感知哈希和预处理属于CPU密集型操作，在parallel调度器上执行。
+     * 图片在池化缓冲区中，整个流程结束、出错或取消时释放；parallel调度器上的任务各自持有一个引用
+     */
+    private Mono<String> describeDownloadedAsync(String imageUrl) {
+        return Mono.usingWhen(imageDownloadService.downloadImageAsync(imageUrl)
+                        .doOnSubscribe(s -> log.info("正在下载图片: {}", imageUrl)),
+                image -> {
+                    String cacheKey = AnalysisCache.contentKey(image.data());
+                    return analysisCache.getDescription(cacheKey)
+                            .doOnNext(description -> log.info("图片内容命中缓存: {}", imageUrl))
+                            .switchIfEmpty(Mono.fromCallable(() -> {
+                                        try (DownloadedImage held = image.retain()) {
+                                            return perceptualHash(held);
+                                        }
+                                    })
+                                    .subscribeOn(Schedulers.parallel())
+                                    .flatMap(hash -> findNearDuplicate(hash, cacheKey, imageUrl)
+                                            .switchIfEmpty(preprocessAndDescribeAsync(image)
+                                                    .doOnNext(description -> remember(cacheKey, hash, description)))));
+                },
+                image -> Mono.fromRunnable(image::close));
+    }
+
+    private Mono<String> preprocessAndDescribeAsync(DownloadedImage image) {
+        return Mono.usingWhen(Mono.fromCallable(() -> {
+                            try (DownloadedImage held = image.retain()) {
+                                return metrics.time(Stage.PREPROCESS, () -> imagePreprocessor.preprocess(held));
+                            }
+                        })
+                        .subscribeOn(Schedulers.parallel()),
+                prepared -> {
+                    log.info("正在调用通义千问分析图片，图片大小: {} bytes", prepared.size());
+                    return qianWenService.analyzeImageAsync(prepared.data(), prepared.mimeType());
+                },
+                prepared -> Mono.fromRunnable(prepared::close))
+                // 取消时已完成的预处理结果
+                .doOnDiscard(PreparedImage.class, PreparedImage::close);
+    }
+
+    /**
+     * 计算图片感知哈希，未启用近似重复查找或无法解码时返回empty
+     */
+    private OptionalLong perceptualHash(DownloadedImage image) {
+        if (!nearDuplicateIndex.enabled()) {
+            return OptionalLong.empty();
+        }
+        return metrics.time(Stage.PERCEPTUAL_HASH, () -> PerceptualHash.dHash(image.inputStream()));
+    }
+
+    /**
+     * 查找近似重复的图片并复用它的描述
+     * 复用的描述同时按本图的内容哈希写入缓存，同一张图片再次请求时直接命中
+     * @return 已有的描述，没有近似重复的图片或其描述已过期时为空
+     */
+    private Mono<String> findNearDuplicate(OptionalLong hash, String cacheKey, String imageUrl) {
+        if (hash.isEmpty()) {
+            return Mono.empty();
+        }
+        NearDuplicateIndex.Match match = nearDuplicateIndex.find(hash.getAsLong());
+        if (match == null) {
+            metrics.nearDuplicate(false);
+            return Mono.empty();
+        }
+        return Mono.deferContextual(context -> analysisCache.getDescription(match.key())
+                .doOnNext(description -> {
+                    metrics.nearDuplicate(true);
+                    AnalysisTracing.tag(context, "near.duplicate.distance", match.distance());
+                    analysisCache.putDescription(cacheKey, description);
+                    log.info("图片与已分析的图片近似重复，复用描述: {}, 汉明距离: {}", imageUrl, match.distance());
+                })
+                .switchIfEmpty(Mono.fromRunnable(() -> metrics.nearDuplicate(false))));
+    }
+
+    private void remember(String cacheKey, OptionalLong hash, String description) {
+        analysisCache.putDescription(cacheKey, description);
+        hash.ifPresent(h -> nearDuplicateIndex.add(h, cacheKey));
+    }
+
+    /**
+     * 流式分析图片并生成语音
+     * 通义千问一边生成文本，一边按句切分送入TTS，每句语音生成后立即下发，
+     * 首段语音的等待时间不再是模型耗时与TTS耗时之和。
+     * 第一句合成时全文尚未生成，未指定音色时按图片URL选择，同一个故事的各句使用同一个音色
+     * @param imageUrl 图片URL
+     * @param responseMode 语音数据的返回方式
+     * @param audioFormat 语音格式
+     * @param voice 音色，为null时按图片URL选择
+     * @return 按句子顺序输出的语音片段
+     */
+    public Flux<ImageAnalysisChunk> analyzeImageAndGenerateVoiceStream(String imageUrl, AudioResponseMode responseMode,
+                                                                      AudioFormat audioFormat, String voice) {
+        String selectedVoice = voice != null ? voice : voiceSelector.forContent(imageUrl);
+        return SentenceSplitter.split(qianWenService.streamImageWithUrl(imageUrl))
+                .doOnSubscribe(s -> log.info("正在流式分析图片URL: {}", imageUrl))
+                .index()
+                // 多句TTS并行，按句子顺序输出
+                .flatMapSequential(sentence -> aliTtsService.generateSpeechAsync(sentence.getT2(), audioFormat, selectedVoice)
+                        .map(audioBytes -> toChunk(sentence.getT1(), sentence.getT2(), audioBytes, responseMode,
+                                AudioFormat.detect(audioBytes, audioFormat))),
+                        streamTtsConcurrency)
+                .onErrorMap(e -> {
+                    log.error("流式图片分析和语音生成失败: ", e);
+                    return new RuntimeException("处理失败: " + e.getMessage(), e);
+                });
+    }
     
+    /**
+     * 批量分析图片并生成语音
+     * 图片分析和语音合成分两级并行，各自的并发数单独配置；
+     * 每张图片完成后立即输出，单张失败只体现在该条结果中，不影响整个批次
+     * @param imageUrls 图片URL列表
+     * @param responseMode 语音数据的返回方式
+     * @param audioFormat 语音格式
+     * @param voice 音色，为null时按每张图片的描述文本选择
+     * @return 按完成顺序输出的每张图片的结果
+     */
+    public Flux<ImageAnalysisBatchItem> analyzeBatch(List<String> imageUrls, AudioResponseMode responseMode,
+                                                     AudioFormat audioFormat, String voice) {
+        return Flux.fromIterable(imageUrls)
+                .doOnSubscribe(s -> log.info("开始批量分析图片，数量: {}", imageUrls.size()))
+                .index()
+                // 1. 调用通义千问分析图片，批次内相同URL只调用一次
+                .flatMap(item -> inFlightDescriptions.execute(item.getT2(), () -> describeAsync(item.getT2()))
+                                .map(description -> BatchStage.described(item.getT1(), item.getT2(), description))
+                                .onErrorResume(e -> Mono.just(BatchStage.failed(item.getT1(), item.getT2(), e))),
+                        batchDescribeConcurrency)
+                // 2. 调用阿里TTS生成语音
+                .flatMap(stage -> stage.error() != null
+                                ? Mono.just(toFailedItem(stage.index(), stage.imageUrl(), stage.error()))
+                                : aliTtsService.generateSpeechAsync(stage.description(), audioFormat, voice)
+                                        .map(audioBytes -> ImageAnalysisBatchItem.builder()
+                                                .index(stage.index())
+                                                .imageUrl(stage.imageUrl())
+                                                .result(toResponse(AnalysisResult.of(stage.description(), audioBytes,
+                                                        audioFormat), responseMode))
+                                                .build())
+                                        .onErrorResume(e -> Mono.just(toFailedItem(stage.index(), stage.imageUrl(), e))),
+                        batchTtsConcurrency);
+    }
+
+    private ImageAnalysisBatchItem toFailedItem(long index, String imageUrl, Throwable e) {
+        log.error("批量分析中图片处理失败: {}", imageUrl, e);
+        return ImageAnalysisBatchItem.builder()
+                .index(index)
+                .imageUrl(imageUrl)
+                .result(ImageAnalysisResponse.builder()
+                        .success(false)
+                        .error("图片分析失败: " + e.getMessage())
+                        .build())
+                .build();
+    }
+
+    /**
+     * 批量分析中第一级（图片分析）的输出
+     */
+    private record BatchStage(long index, String imageUrl, String description, Throwable error) {
+
+        static BatchStage described(long index, String imageUrl, String description) {
+            return new BatchStage(index, imageUrl, description, null);
+        }
+
+        static BatchStage failed(long index, String imageUrl, Throwable error) {
+            return new BatchStage(index, imageUrl, null, error);
+        }
+    }
+
     /**
      * 分析图片并生成语音（备用方法 - 使用图片字节数组）
      * @param imageUrl 图片URL
@@ -50,29 +391,76 @@ public class ImageAnalysisService {
      */
     public ImageAnalysisResponse analyzeImageAndGenerateVoiceWithDownload(String imageUrl) {
         try {
-            // 1. 下载图片
-            log.info("正在下载图片: {}", imageUrl);
-            byte[] imageBytes = imageDownloadService.downloadImage(imageUrl);
+            // 1. 下载图片，预处理后调用通义千问分析
+            String description = describeDownloadedBlocking(imageUrl);
             
-            // 2. 调用通义千问分析图片
-            log.info("正在调用通义千问分析图片，图片大小: {} bytes", imageBytes.length);
-            String description = qianWenService.analyzeImage(imageBytes);
-            
-            // 3. 调用阿里TTS生成语音
+            // 2. 调用阿里TTS生成语音
             log.info("正在生成语音，文本长度: {}", description.length());
             byte[] audioBytes = aliTtsService.generateSpeech(description);
             
-            // 4. 构建响应
-            return ImageAnalysisResponse.builder()
-                    .success(true)
-                    .description(description)
-                    .audioData(java.util.Base64.getEncoder().encodeToString(audioBytes))
-                    .audioFormat("wav")  // 更新为wav格式
-                    .build();
+            // 3. 构建响应
+            return toResponse(AnalysisResult.of(description, audioBytes, AudioFormat.WAV), AudioResponseMode.INLINE);
                     
         } catch (Exception e) {
             log.error("图片分析和语音生成失败: ", e);
             throw new RuntimeException("处理失败: " + e.getMessage(), e);
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * 分析图片并生成语音（备用方法 - 使用图片字节数组，非阻塞）
+     * @param imageUrl 图片URL
+     * @return 分析结果和语音数据
+     */
+    public Mono<ImageAnalysisResponse> analyzeImageAndGenerateVoiceWithDownloadAsync(String imageUrl) {
+        // 1. 下载图片，预处理后调用通义千问分析
+        return describeDownloadedAsync(imageUrl)
+                // 2. 调用阿里TTS生成语音
+                .flatMap(description -> {
+                    log.info("正在生成语音，文本长度: {}", description.length());
+                    return aliTtsService.generateSpeechAsync(description)
+                            .map(audioBytes -> toResponse(AnalysisResult.of(description, audioBytes, AudioFormat.WAV),
+                                    AudioResponseMode.INLINE));
+                })
+                .onErrorMap(e -> {
+                    log.error("图片分析和语音生成失败: ", e);
+                    return new RuntimeException("处理失败: " + e.getMessage(), e);
+                });
+    }
+
+    /**
+     * 构建响应
+     * INLINE模式内嵌语音数据（写响应时才编码为Base64），REFERENCE模式将语音存入AudioStore，只返回语音ID和下载地址
+     */
+    private ImageAnalysisResponse toResponse(AnalysisResult result, AudioResponseMode responseMode) {
+        ImageAnalysisResponse.ImageAnalysisResponseBuilder builder = ImageAnalysisResponse.builder()
+                .success(true)
+                .description(result.description())
+                .audioFormat(result.audioFormat())
+                .audioSize(result.audioData().length);
+        if (responseMode == AudioResponseMode.REFERENCE) {
+            String audioId = audioStore.put(result.audioData(), result.audioFormat());
+            return builder.audioId(audioId)
+                    .audioUrl(AUDIO_PATH + audioId)
+                    .build();
+        }
+        return builder.audioData(result.audioData())
+                .build();
+    }
+
+    private ImageAnalysisChunk toChunk(long index, String text, byte[] audioBytes, AudioResponseMode responseMode,
+                                       AudioFormat audioFormat) {
+        ImageAnalysisChunk.ImageAnalysisChunkBuilder builder = ImageAnalysisChunk.builder()
+                .index(index)
+                .text(text)
+                .audioFormat(audioFormat.value());
+        if (responseMode == AudioResponseMode.REFERENCE) {
+            String audioId = audioStore.put(audioBytes, audioFormat.value());
+            return builder.audioId(audioId)
+                    .audioUrl(AUDIO_PATH + audioId)
+                    .build();
+        }
+        return builder.audioData(audioBytes)
+                .build();
+    }
+}
@@ -1,13 +1,22 @@
 package com.example.imageai.service;
 
+import com.example.imageai.image.DownloadedImage;
+import com.example.imageai.image.ImageBodyReader;
+import com.example.imageai.metrics.AnalysisMetrics;
+import com.example.imageai.metrics.AnalysisTracing;
+import com.example.imageai.metrics.Payload;
+import com.example.imageai.metrics.Stage;
+import com.example.imageai.resilience.UpstreamResilience;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Mono;
 
-import java.io.ByteArrayOutputStream;
 import java.time.Duration;
 
 @Slf4j
@@ -15,44 +24,69 @@ import java.time.Duration;
 @RequiredArgsConstructor
 public class ImageDownloadService {
 
-    private final WebClient webClient = WebClient.builder()
-            .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(10 * 1024 * 1024)) // 10MB
-            .build();
+    private final UpstreamResilience upstreamResilience;
+
+    private final AnalysisMetrics metrics;
+
+    private final AnalysisTracing tracing;
+
+    @Qualifier("imageDownloadWebClient")
+    private final WebClient webClient;
+
+    @Value("${image.download.max-bytes:10485760}")
+    private int maxBytes;
 
     /**
      * 下载图片
      * @param imageUrl 图片URL
-     * @return 图片字节数组
+     * @return 图片数据，由调用方close
      */
-    public byte[] downloadImage(String imageUrl) {
-        try {
-            log.info("开始下载图片: {}", imageUrl);
-            
-            return webClient.get()
-                    .uri(imageUrl)
-                    .retrieve()
-                    .bodyToFlux(DataBuffer.class)
-                    .timeout(Duration.ofSeconds(30))
-                    .collectList()
-                    .map(dataBuffers -> {
-                        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                        dataBuffers.forEach(dataBuffer -> {
-                            byte[] bytes = new byte[dataBuffer.readableByteCount()];
-                            dataBuffer.read(bytes);
-                            DataBufferUtils.release(dataBuffer);
-                            try {
-                                outputStream.write(bytes);
-                            } catch (Exception e) {
-                                throw new RuntimeException("写入数据失败", e);
-                            }
-                        });
-                        return outputStream.toByteArray();
-                    })
-                    .block();
-                    
-        } catch (Exception e) {
-            log.error("下载图片失败: {}", imageUrl, e);
-            throw new RuntimeException("下载图片失败: " + e.getMessage(), e);
+    public DownloadedImage downloadImage(String imageUrl) {
+        return downloadImageAsync(imageUrl).block();
+    }
+
+    /**
+     * 下载图片（非阻塞）
+     * Content-Length超限时直接拒绝；下载过程中累计字节数超限立即中止；
+     * 首个数据块即检查文件头魔数，非图片内容尽早拒绝（见ImageBodyReader）。
+     * 图片数据在池化缓冲区中，由订阅方close；对冲请求中落选的一方由容错层释放，取消时已下载完成的图片在这里释放
+     * @param imageUrl 图片URL
+     * @return 图片数据
+     */
+    public Mono<DownloadedImage> downloadImageAsync(String imageUrl) {
+        return tracing.span("image.download", span -> metrics.time(Stage.DOWNLOAD,
+                        upstreamResilience.execute(Upstream.IMAGE_DOWNLOAD, () -> webClient.get()
+                                .uri(imageUrl)
+                                .exchangeToMono(this::readImage)
+                                .timeout(Duration.ofSeconds(30)), DownloadedImage::close))
+                .doOnSubscribe(s -> {
+                    span.highCardinalityKeyValue("image.url", imageUrl);
+                    log.info("开始下载图片: {}", imageUrl);
+                })
+                .doOnNext(image -> {
+                    span.highCardinalityKeyValue("image.bytes", String.valueOf(image.size()));
+                    span.highCardinalityKeyValue("image.format", String.valueOf(image.format()));
+                    metrics.recordPayload(Payload.IMAGE_DOWNLOAD, image.size());
+                    log.info("图片下载完成: {}, 格式: {}, 大小: {} bytes",
+                            imageUrl, image.format(), image.size());
+                })
+                .onErrorMap(e -> {
+                    log.error("下载图片失败: {}", imageUrl, e);
+                    return new RuntimeException("下载图片失败: " + e.getMessage(), e);
+                })
+                .doOnDiscard(DownloadedImage.class, DownloadedImage::close));
+    }
+
+    private Mono<DownloadedImage> readImage(ClientResponse response) {
+        if (response.statusCode().isError()) {
+            return response.createError();
+        }
+        long contentLength = response.headers().contentLength().orElse(-1L);
+        if (contentLength > maxBytes) {
+            return response.releaseBody()
+                    .then(Mono.error(new RuntimeException("图片大小超过限制: " + contentLength + " > " + maxBytes + " bytes")));
         }
+
+        return ImageBodyReader.read(response.bodyToFlux(DataBuffer.class), maxBytes);
     }
-} 
\ No newline at end of file
+}
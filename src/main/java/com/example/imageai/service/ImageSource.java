@@ -0,0 +1,17 @@
+package com.example.imageai.service;
+
+/**
+ * 图片交给通义千问的方式
+ */
+public enum ImageSource {
+
+    /**
+     * 直接把图片URL交给通义千问，由模型服务端拉取图片
+     */
+    URL,
+
+    /**
+     * 服务端下载图片，缩放和重新编码后以Base64内嵌上传
+     */
+    DOWNLOAD
+}
@@ -1,17 +1,32 @@
 package com.example.imageai.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.example.imageai.cache.AnalysisCache;
+import com.example.imageai.metrics.AnalysisMetrics;
+import com.example.imageai.metrics.AnalysisTracing;
+import com.example.imageai.metrics.Payload;
+import com.example.imageai.metrics.Stage;
+import com.example.imageai.resilience.UpstreamResilience;
+import com.example.imageai.util.StreamingJsonBody;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClientRequest;
 
 import java.time.Duration;
-import java.util.Base64;
+import java.util.HashMap;
 import java.util.Map;
 
 @Slf4j
@@ -19,17 +34,39 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class QianWenService {
 
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE =
+            new ParameterizedTypeReference<>() {};
+
+    /**
+     * 视觉理解模型
+     */
+    private static final String MODEL = "qwen-vl-plus";
+
     @Value("${qianwen.api.key:your-api-key}")
     private String apiKey;
 
     @Value("${qianwen.api.url:https://dashscope.aliyuncs.com/compatible-mode/v1/chat/completions}")
     private String apiUrl;
 
+    /**
+     * 流式调用的读取超时（两个SSE片段之间的最长间隔），只作用于流式请求；
+     * 非流式请求在生成结束前不返回任何字节，只受整体timeout约束
+     */
+    @Value("${qianwen.stream.read-timeout:30s}")
+    private Duration streamReadTimeout;
+
+    private final UpstreamResilience upstreamResilience;
+
+    private final AnalysisCache analysisCache;
+
+    private final AnalysisMetrics metrics;
+
+    private final AnalysisTracing tracing;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    private final WebClient webClient = WebClient.builder()
-            .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(50 * 1024 * 1024)) // 50MB
-            .build();
+    @Qualifier("qianWenWebClient")
+    private final WebClient webClient;
 
 
     /**
@@ -38,72 +75,125 @@ public class QianWenService {
      * @return 图片描述文本
      */
     public String analyzeImageWithUrl(String imageUrl) {
+        return analyzeImageWithUrlAsync(imageUrl).block();
+    }
+
+    /**
+     * 使用通义千问分析图片内容（直接使用图片URL，非阻塞）
+     * 等待模型响应期间不占用任何线程
+     * @param imageUrl 图片URL
+     * @return 图片描述文本
+     */
+    public Mono<String> analyzeImageWithUrlAsync(String imageUrl) {
+        String cacheKey = AnalysisCache.urlKey(imageUrl);
+        return tracing.span("qianwen.analyze", span -> {
+            span.lowCardinalityKeyValue(AnalysisTracing.MODEL, MODEL)
+                    .highCardinalityKeyValue("image.url", imageUrl);
+            return analysisCache.getDescription(cacheKey)
+                    .doOnNext(content -> {
+                        span.highCardinalityKeyValue("cache.hit", "true");
+                        log.info("通义千问URL分析命中缓存: {}", imageUrl);
+                    })
+                    .switchIfEmpty(Mono.defer(() -> requestImageWithUrl(imageUrl)
+                            .doOnNext(content -> analysisCache.putDescription(cacheKey, content))))
+                    .doOnNext(content -> span.highCardinalityKeyValue("response.length", String.valueOf(content.length())));
+        });
+    }
+
+    private Mono<String> requestImageWithUrl(String imageUrl) {
+        Map<String, Object> requestBody = buildUrlRequestBody(imageUrl);
+
+        return metrics.time(Stage.QIANWEN, upstreamResilience.execute(Upstream.QIANWEN, () -> webClient.post()
+                        .uri(apiUrl)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .bodyValue(requestBody)
+                        .retrieve()
+                        .bodyToMono(String.class)
+                        .timeout(Duration.ofSeconds(60))
+                        .doOnSubscribe(s -> log.info("正在调用通义千问API分析图片URL: {}", imageUrl))
+                        .map(response -> metrics.time(Stage.JSON_PARSE, () -> ChatCompletionParser.parse(response)))
+                        .doOnNext(content -> log.info("通义千问URL分析完成，内容长度: {}", content.length()))
+                        .onErrorMap(e -> {
+                            log.error("通义千问图片URL分析失败: {}", imageUrl, e);
+                            return new RuntimeException("图片URL分析失败: " + e.getMessage(), e);
+                        })));
+    }
+
+    /**
+     * 使用通义千问流式分析图片内容（SSE）
+     * 模型一边生成一边返回文本片段
+     * @param imageUrl 图片URL
+     * @return 文本片段流
+     */
+    public Flux<String> streamImageWithUrl(String imageUrl) {
+        String cacheKey = AnalysisCache.urlKey(imageUrl);
+        return analysisCache.getDescription(cacheKey)
+                .doOnNext(content -> log.info("通义千问流式分析命中缓存: {}", imageUrl))
+                .flux()
+                .switchIfEmpty(Flux.defer(() -> {
+                    // 流式结果完整结束后再写入缓存
+                    StringBuilder content = new StringBuilder();
+                    return requestStreamWithUrl(imageUrl)
+                            .doOnNext(content::append)
+                            .doOnComplete(() -> analysisCache.putDescription(cacheKey, content.toString()));
+                }));
+    }
+
+    private Flux<String> requestStreamWithUrl(String imageUrl) {
+        Map<String, Object> requestBody = new HashMap<>(buildUrlRequestBody(imageUrl));
+        requestBody.put("stream", true);
+
+        return metrics.time(Stage.QIANWEN, upstreamResilience.executeMany(Upstream.QIANWEN, () -> webClient.post()
+                        .uri(apiUrl)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .header(HttpHeaders.ACCEPT, MediaType.TEXT_EVENT_STREAM_VALUE)
+                        .httpRequest(request -> request.<HttpClientRequest>getNativeRequest().responseTimeout(streamReadTimeout))
+                        .bodyValue(requestBody)
+                        .retrieve()
+                        .bodyToFlux(SSE_TYPE)
+                        .timeout(Duration.ofSeconds(60))
+                        .doOnSubscribe(s -> log.info("正在流式调用通义千问API分析图片URL: {}", imageUrl))
+                        .mapNotNull(ServerSentEvent::data)
+                        .takeWhile(data -> !"[DONE]".equals(data.trim()))
+                        .map(data -> metrics.time(Stage.JSON_PARSE, () -> ChatCompletionParser.parseDelta(data)))
+                        .filter(delta -> !delta.isEmpty())
+                        .onErrorMap(e -> {
+                            log.error("通义千问流式分析失败: {}", imageUrl, e);
+                            return new RuntimeException("图片URL流式分析失败: " + e.getMessage(), e);
+                        })));
+    }
+
+    /**
+     * 构建图片URL分析的请求体 - 使用OpenAI兼容格式
+     * @param imageUrl 图片URL
+     * @return 请求体
+     */
+    private Map<String, Object> buildUrlRequestBody(String imageUrl) {
         String content1 = "请详高度概括这张图片的内容，包括主要物体、场景、颜色、动作等细节,100字左右";
         String content2 = "请根据图片内容生成一个小故事,100字左右";
-        try {
-            // 构建请求体 - 使用OpenAI兼容格式
-            Map<String, Object> requestBody = Map.of(
-                "model", "qwen-vl-plus",
-                "messages", java.util.List.of(
-                    Map.of(
-                        "role", "user",
-                        "content", java.util.List.of(
-                            Map.of(
-                                "type", "image_url",
-                                "image_url", Map.of("url", imageUrl)
-                            ),
-                            Map.of(
-                                "type", "text",
-                                "text", content2
-                            )
+
+        return Map.of(
+            "model", MODEL,
+            "messages", java.util.List.of(
+                Map.of(
+                    "role", "user",
+                    "content", java.util.List.of(
+                        Map.of(
+                            "type", "image_url",
+                            "image_url", Map.of("url", imageUrl)
+                        ),
+                        Map.of(
+                            "type", "text",
+                            "text", content2
                         )
                     )
                 )
-            );
-
-            log.info("正在调用通义千问API分析图片URL: {}", imageUrl);
-            
-            String response = webClient.post()
-                    .uri(apiUrl)
-                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
-                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .timeout(Duration.ofSeconds(60))
-                    .block();
-
-            // 解析响应 - OpenAI兼容格式
-            JsonNode responseNode = objectMapper.readTree(response);
-            
-            if (responseNode.has("choices") && 
-                responseNode.get("choices").isArray() &&
-                responseNode.get("choices").size() > 0) {
-                
-                JsonNode firstChoice = responseNode.get("choices").get(0);
-                if (firstChoice.has("message") && firstChoice.get("message").has("content")) {
-                    String content = firstChoice.get("message").get("content").asText();
-                    log.info("通义千问URL分析完成，内容长度: {}", content.length());
-                    return content;
-                }
-            }
-            
-            // 检查是否有错误信息
-            if (responseNode.has("error")) {
-                JsonNode error = responseNode.get("error");
-                String errorMessage = error.has("message") ? error.get("message").asText() : "未知错误";
-                throw new RuntimeException("通义千问API错误: " + errorMessage);
-            }
-            
-            throw new RuntimeException("通义千问API响应格式异常: " + response);
-            
-        } catch (Exception e) {
-            log.error("通义千问图片URL分析失败: {}", imageUrl, e);
-            throw new RuntimeException("图片URL分析失败: " + e.getMessage(), e);
-        }
+            )
+        );
     }
 
-
     /**
      * 使用通义千问分析图片内容
      *
@@ -111,67 +201,124 @@ public class QianWenService {
      * @return 图片描述文本
      */
     public String analyzeImage(byte[] imageBytes) {
+        return analyzeImage(imageBytes, "image/jpeg");
+    }
+
+    /**
+     * 使用通义千问分析图片内容
+     *
+     * @param imageBytes 图片字节数组
+     * @param mimeType 图片MIME类型
+     * @return 图片描述文本
+     */
+    public String analyzeImage(byte[] imageBytes, String mimeType) {
+        return analyzeImageAsync(imageBytes, mimeType).block();
+    }
+
+    /**
+     * 使用通义千问分析图片内容
+     *
+     * @param imageData 图片数据，调用返回后由调用方release
+     * @param mimeType 图片MIME类型
+     * @return 图片描述文本
+     */
+    public String analyzeImage(ByteBuf imageData, String mimeType) {
+        return analyzeImageAsync(imageData, mimeType).block();
+    }
+
+    /**
+     * 使用通义千问分析图片内容（非阻塞）
+     *
+     * @param imageBytes 图片字节数组
+     * @return 图片描述文本
+     */
+    public Mono<String> analyzeImageAsync(byte[] imageBytes) {
+        return analyzeImageAsync(imageBytes, "image/jpeg");
+    }
+
+    /**
+     * 使用通义千问分析图片内容（非阻塞）
+     *
+     * @param imageBytes 图片字节数组
+     * @param mimeType 图片MIME类型
+     * @return 图片描述文本
+     */
+    public Mono<String> analyzeImageAsync(byte[] imageBytes, String mimeType) {
+        return analyzeImageAsync(Unpooled.wrappedBuffer(imageBytes), mimeType);
+    }
+
+    /**
+     * 使用通义千问分析图片内容（非阻塞）
+     * 图片数据直接从池化缓冲区编码进请求体，失败重试时重新编码
+     *
+     * @param imageData 图片数据，返回的Mono结束（包括重试）之前必须保持可读，由调用方release
+     * @param mimeType 图片MIME类型
+     * @return 图片描述文本
+     */
+    public Mono<String> analyzeImageAsync(ByteBuf imageData, String mimeType) {
+        // 构建请求体 - 使用OpenAI兼容格式，图片数据在发送时流式编码
+        StreamingJsonBody requestBody = buildImageRequestBody(imageData, mimeType);
+        metrics.recordPayload(Payload.IMAGE_UPLOAD, requestBody.contentLength());
+
+        return tracing.span("qianwen.analyze", span -> {
+            span.lowCardinalityKeyValue(AnalysisTracing.MODEL, MODEL)
+                    .highCardinalityKeyValue("image.bytes", String.valueOf(imageData.readableBytes()))
+                    .highCardinalityKeyValue("request.bytes", String.valueOf(requestBody.contentLength()));
+            return requestImage(requestBody)
+                    .doOnNext(content -> span.highCardinalityKeyValue("response.length", String.valueOf(content.length())));
+        });
+    }
+
+    private Mono<String> requestImage(StreamingJsonBody requestBody) {
+        return metrics.time(Stage.QIANWEN, upstreamResilience.execute(Upstream.QIANWEN, () -> webClient.post()
+                        .uri(apiUrl)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .contentLength(requestBody.contentLength())
+                        .body((outputMessage, context) -> outputMessage.writeWith(
+                                requestBody.write(outputMessage.bufferFactory())))
+                        .retrieve()
+                        .bodyToMono(String.class)
+                        .timeout(Duration.ofSeconds(60))
+                        .doOnSubscribe(s -> log.info("正在调用通义千问API分析图片"))
+                        .map(response -> metrics.time(Stage.JSON_PARSE, () -> ChatCompletionParser.parse(response)))
+                        .doOnNext(content -> log.info("通义千问分析完成，内容长度: {}", content.length()))
+                        .onErrorMap(e -> {
+                            log.error("通义千问图片分析失败: ", e);
+                            return new RuntimeException("图片分析失败: " + e.getMessage(), e);
+                        })));
+    }
+
+    /**
+     * 构建内嵌图片的请求体
+     * JSON信封中图片的位置先放占位符，发送时再把图片的Base64编码逐块写入
+     * @param imageData 图片数据
+     * @param mimeType 图片MIME类型
+     * @return 流式请求体
+     */
+    private StreamingJsonBody buildImageRequestBody(ByteBuf imageData, String mimeType) {
+        Map<String, Object> envelope = Map.of(
+                "model", MODEL,
+                "messages", java.util.List.of(
+                        Map.of(
+                                "role", "user",
+                                "content", java.util.List.of(
+                                        Map.of(
+                                                "type", "image_url",
+                                                "image_url", Map.of("url", "data:" + mimeType + ";base64," + StreamingJsonBody.PLACEHOLDER)
+                                        ),
+                                        Map.of(
+                                                "type", "text",
+                                                "text", "请详细描述这张图片的内容，包括主要物体、场景、颜色、动作等细节,200字左右。"
+                                        )
+                                )
+                        )
+                )
+        );
         try {
-            // 将图片转为Base64
-            String base64Image = Base64.getEncoder().encodeToString(imageBytes);
-
-            // 构建请求体
-            Map<String, Object> requestBody = Map.of(
-                    "model", "qwen-vl-plus",
-                    "input", Map.of(
-                            "messages", java.util.List.of(
-                                    Map.of(
-                                            "role", "user",
-                                            "content", java.util.List.of(
-                                                    Map.of("image", "data:image/jpeg;base64," + base64Image),
-                                                    Map.of("text", "请详细描述这张图片的内容，包括主要物体、场景、颜色、动作等细节,200字左右。")
-                                            )
-                                    )
-                            )
-                    ),
-                    "parameters", Map.of(
-                            "result_format", "message"
-                    )
-            );
-
-            log.info("正在调用通义千问API分析图片");
-
-            String response = webClient.post()
-                    .uri(apiUrl)
-                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
-                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .timeout(Duration.ofSeconds(60))
-                    .block();
-
-            // 解析响应
-            JsonNode responseNode = objectMapper.readTree(response);
-
-            if (responseNode.has("output") &&
-                    responseNode.get("output").has("choices") &&
-                    responseNode.get("output").get("choices").isArray() &&
-                    responseNode.get("output").get("choices").size() > 0) {
-
-                JsonNode firstChoice = responseNode.get("output").get("choices").get(0);
-                if (firstChoice.has("message") && firstChoice.get("message").has("content")) {
-                    String content = firstChoice.get("message").get("content").asText();
-                    log.info("通义千问分析完成，内容长度: {}", content.length());
-                    return content;
-                }
-            }
-
-            // 如果正常路径失败，尝试从错误信息中获取信息
-            if (responseNode.has("message")) {
-                throw new RuntimeException("通义千问API错误: " + responseNode.get("message").asText());
-            }
-
-            throw new RuntimeException("通义千问API响应格式异常: " + response);
-
-        } catch (Exception e) {
-            log.error("通义千问图片分析失败: ", e);
-            throw new RuntimeException("图片分析失败: " + e.getMessage(), e);
+            return new StreamingJsonBody(objectMapper.writeValueAsBytes(envelope), imageData);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("构建通义千问请求失败: " + e.getOriginalMessage(), e);
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,84 @@
+package com.example.imageai.service;
+
+import com.example.imageai.audio.PhraseAudioStore;
+import com.example.imageai.audio.VoiceSelector;
+import com.example.imageai.dto.AudioFormat;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+/**
+ * 常用短语语音预合成
+ * 应用就绪后按 (短语, 音色, 格式) 合成尚未存储的短语语音，写入PhraseAudioStore。
+ * 已有的短语语音在重启后直接映射，不再调用TTS；任意一条合成失败即停止本次预合成，
+ * 避免在TTS不可用时连续失败触发熔断
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TtsPhraseWarmup {
+
+    private final AliTtsService aliTtsService;
+
+    private final PhraseAudioStore phraseAudioStore;
+
+    private final VoiceSelector voiceSelector;
+
+    @Value("${ali.tts.phrases.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ali.tts.phrases.formats:wav}")
+    private List<String> formats;
+
+    @Value("${ali.tts.phrases.warmup.concurrency:2}")
+    private int concurrency;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmup() {
+        if (!enabled || phraseAudioStore.phrases().isEmpty()) {
+            return;
+        }
+        List<Pending> missing = missing();
+        if (missing.isEmpty()) {
+            log.info("常用短语语音均已预合成，共 {} 条", phraseAudioStore.size());
+            return;
+        }
+        long start = System.currentTimeMillis();
+        log.info("开始预合成常用短语语音: {} 条", missing.size());
+        Flux.fromIterable(missing)
+                .flatMap(item -> aliTtsService.synthesize(item.phrase(), AudioFormat.from(item.format()), item.voice())
+                                .map(audio -> new PhraseAudioStore.PhraseAudio(item.phrase(), item.voice(), item.format(), audio)),
+                        concurrency)
+                .collectList()
+                // 写文件和建立映射在boundedElastic线程上执行
+                .publishOn(Schedulers.boundedElastic())
+                .subscribe(audios -> {
+                    phraseAudioStore.append(audios);
+                    log.info("常用短语语音预合成完成，耗时: {} ms", System.currentTimeMillis() - start);
+                }, e -> log.warn("常用短语语音预合成失败，本次启动不使用预合成语音: {}", e.getMessage()));
+    }
+
+    /**
+     * 尚未存储的 (短语, 音色, 格式) 组合
+     */
+    private List<Pending> missing() {
+        return formats.stream()
+                .map(format -> AudioFormat.from(format).value())
+                .distinct()
+                .flatMap(format -> voiceSelector.candidateVoices().stream()
+                        .flatMap(voice -> phraseAudioStore.phrases().stream()
+                                .filter(phrase -> !phraseAudioStore.contains(phrase, voice, format))
+                                .map(phrase -> new Pending(phrase, voice, format))))
+                .toList();
+    }
+
+    private record Pending(String phrase, String voice, String format) {
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.imageai.service;
+
+/**
+ * 外部上游服务
+ */
+public enum Upstream {
+
+    /**
+     * 通义千问（DashScope）
+     */
+    QIANWEN,
+
+    /**
+     * 阿里云TTS（nls-gateway）
+     */
+    TTS,
+
+    /**
+     * 图片下载
+     */
+    IMAGE_DOWNLOAD
+}
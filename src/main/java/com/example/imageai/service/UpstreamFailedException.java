@@ -0,0 +1,34 @@
+package com.example.imageai.service;
+
+import lombok.Getter;
+
+import java.util.Optional;
+
+/**
+ * 上游调用失败
+ * 重试后仍返回5xx、网络错误或无效响应时抛出；调用方应向客户端返回502，而不是降级为模拟数据
+ */
+@Getter
+public class UpstreamFailedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Upstream upstream;
+
+    public UpstreamFailedException(Upstream upstream, Throwable cause) {
+        super(upstream + "调用失败: " + cause.getMessage(), cause);
+        this.upstream = upstream;
+    }
+
+    /**
+     * 在异常链中查找上游失败异常
+     */
+    public static Optional<UpstreamFailedException> find(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof UpstreamFailedException failed) {
+                return Optional.of(failed);
+            }
+        }
+        return Optional.empty();
+    }
+}
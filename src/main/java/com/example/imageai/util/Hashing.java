@@ -0,0 +1,64 @@
+package com.example.imageai.util;
+
+import io.netty.buffer.ByteBuf;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * 内容哈希工具
+ */
+public final class Hashing {
+
+    private Hashing() {
+    }
+
+    /**
+     * 计算SHA-256并取前128位的十六进制表示，作为内容寻址的键
+     * @param data 数据
+     * @return 32位十六进制字符串
+     */
+    public static String sha256Hex(byte[] data) {
+        return HexFormat.of().formatHex(sha256().digest(data), 0, 16);
+    }
+
+    /**
+     * 计算缓冲区可读部分的SHA-256，直接读取缓冲区（包括直接内存和组合缓冲区），不复制到堆上，也不移动读索引
+     * @param data 数据
+     * @return 32位十六进制字符串
+     */
+    public static String sha256Hex(ByteBuf data) {
+        MessageDigest digest = sha256();
+        for (ByteBuffer buffer : data.nioBuffers()) {
+            digest.update(buffer);
+        }
+        return HexFormat.of().formatHex(digest.digest(), 0, 16);
+    }
+
+    /**
+     * 计算多个字符串拼接后的SHA-256，各部分之间以\0分隔避免歧义
+     * @param parts 字符串
+     * @return 32位十六进制字符串
+     */
+    public static String sha256Hex(String... parts) {
+        MessageDigest digest = sha256();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                digest.update((byte) 0);
+            }
+            digest.update(parts[i].getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest(), 0, 16);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+}
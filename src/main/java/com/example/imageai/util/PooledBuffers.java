@@ -0,0 +1,65 @@
+package com.example.imageai.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+
+import java.io.InputStream;
+
+/**
+ * 池化直接内存缓冲区
+ * 下载的图片、预处理后的JPEG等大块数据放在Netty的池化直接内存中，与reactor-netty收发数据共用同一个分配器，
+ * 不在Java堆上分配与图片一样大的数组：G1中超过region一半的数组直接分配到humongous区，请求多时会频繁触发GC。
+ * <p>
+ * 缓冲区以引用计数管理生命周期：创建者负责release，交给另一个持有者或另一个线程使用时先retain。
+ * 没有release就被回收的缓冲区由Netty的ResourceLeakDetector以ERROR日志报告（检测级别见payload.leak-detection）
+ */
+public final class PooledBuffers {
+
+    /**
+     * 池化分配器，默认分配直接内存
+     */
+    public static final ByteBufAllocator ALLOCATOR = PooledByteBufAllocator.DEFAULT;
+
+    private PooledBuffers() {
+    }
+
+    /**
+     * 取得数据块对应的池化缓冲区，数据块的所有权随之转移
+     * reactor-netty读到的数据块本身就在池中，直接使用，不复制；其他实现复制到池化缓冲区后释放原数据块
+     * @param buffer 数据块
+     * @return 池化缓冲区，由调用方release
+     */
+    public static ByteBuf from(DataBuffer buffer) {
+        if (buffer instanceof NettyDataBuffer netty) {
+            return netty.getNativeBuffer();
+        }
+        ByteBuf copy = ALLOCATOR.directBuffer(buffer.readableByteCount());
+        try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+            while (iterator.hasNext()) {
+                copy.writeBytes(iterator.next());
+            }
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+        return copy;
+    }
+
+    /**
+     * 读取缓冲区可读部分的输入流，不移动缓冲区的读索引，关闭时也不释放缓冲区
+     */
+    public static InputStream inputStream(ByteBuf buffer) {
+        return new ByteBufInputStream(buffer.duplicate());
+    }
+
+    /**
+     * 池中已分配的直接内存（字节），持续增长说明有缓冲区没有release
+     */
+    public static long usedDirectMemory() {
+        return PooledByteBufAllocator.DEFAULT.metric().usedDirectMemory();
+    }
+}
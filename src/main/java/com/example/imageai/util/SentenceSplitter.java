@@ -0,0 +1,91 @@
+package com.example.imageai.util;
+
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 句子切分器
+ * 将模型流式输出的文本片段按句子边界重新切分，便于逐句送入TTS
+ */
+public class SentenceSplitter {
+
+    /**
+     * 句子过短时与下一句合并，避免产生大量极短的TTS请求
+     */
+    private static final int DEFAULT_MIN_SENTENCE_LENGTH = 8;
+
+    private final int minSentenceLength;
+
+    private final StringBuilder buffer = new StringBuilder();
+
+    public SentenceSplitter() {
+        this(DEFAULT_MIN_SENTENCE_LENGTH);
+    }
+
+    public SentenceSplitter(int minSentenceLength) {
+        this.minSentenceLength = minSentenceLength;
+    }
+
+    /**
+     * 将文本片段流切分为句子流
+     * @param fragments 模型输出的文本片段
+     * @return 完整句子
+     */
+    public static Flux<String> split(Flux<String> fragments) {
+        return Flux.defer(() -> {
+            SentenceSplitter splitter = new SentenceSplitter();
+            return fragments.concatMapIterable(splitter::feed)
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(splitter.flush())));
+        });
+    }
+
+    /**
+     * 追加一个文本片段
+     * @param fragment 文本片段
+     * @return 本次凑成的完整句子（可能为空）
+     */
+    public List<String> feed(String fragment) {
+        if (fragment == null || fragment.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> sentences = null;
+        for (int i = 0; i < fragment.length(); i++) {
+            char c = fragment.charAt(i);
+            buffer.append(c);
+            if (isSentenceEnd(c) && buffer.length() >= minSentenceLength) {
+                String sentence = buffer.toString().trim();
+                buffer.setLength(0);
+                if (!sentence.isEmpty()) {
+                    if (sentences == null) {
+                        sentences = new ArrayList<>(2);
+                    }
+                    sentences.add(sentence);
+                }
+            }
+        }
+        return sentences == null ? Collections.emptyList() : sentences;
+    }
+
+    /**
+     * 输出缓冲区中剩余的文本
+     * @return 剩余文本（可能为空）
+     */
+    public List<String> flush() {
+        String rest = buffer.toString().trim();
+        buffer.setLength(0);
+        return rest.isEmpty() ? Collections.emptyList() : List.of(rest);
+    }
+
+    /**
+     * 是否为句子结束符
+     */
+    public static boolean isSentenceEnd(char c) {
+        return switch (c) {
+            case '。', '！', '？', '；', '…', '!', '?', ';', '\n' -> true;
+            default -> false;
+        };
+    }
+}
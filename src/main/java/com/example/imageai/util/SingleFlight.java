@@ -0,0 +1,68 @@
+package com.example.imageai.util;
+
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 请求合并（single-flight）
+ * 相同键的并发请求共享同一次上游调用，所有请求都拿到这次调用的结果。
+ * <p>
+ * 共享的调用不会因为某个订阅者取消而中断：一个客户端断开不影响其他等待者，
+ * 即使所有订阅者都已离开，调用也会执行完毕，结果仍可写入缓存供后续请求使用。
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * 执行调用，已有相同键的调用在进行中时直接复用其结果
+     * @param key 合并键
+     * @param call 实际调用
+     * @return 调用结果
+     */
+    public Mono<V> execute(K key, Supplier<Mono<V>> call) {
+        return Mono.defer(() -> {
+            boolean[] created = new boolean[1];
+            Mono<V> flight = inFlight.computeIfAbsent(key, k -> {
+                created[0] = true;
+                return newFlight(k, call);
+            });
+            if (!created[0]) {
+                shared.increment();
+            }
+            return flight;
+        });
+    }
+
+    /**
+     * 当前进行中的调用数
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * 累计复用已有调用的请求数
+     */
+    public long sharedCount() {
+        return shared.sum();
+    }
+
+    private Mono<V> newFlight(K key, Supplier<Mono<V>> call) {
+        AtomicReference<Mono<V>> self = new AtomicReference<>();
+        // 结果下发前先移出，之后到达的请求发起新的调用（通常会命中缓存）
+        Mono<V> flight = Mono.defer(call)
+                .doOnSuccess(value -> inFlight.remove(key, self.get()))
+                .doOnError(e -> inFlight.remove(key, self.get()))
+                // share()对上游的订阅不可取消，且会保留结果给晚到的订阅者
+                .share();
+        self.set(flight);
+        return flight;
+    }
+}
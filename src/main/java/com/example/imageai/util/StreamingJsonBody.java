@@ -0,0 +1,128 @@
+package com.example.imageai.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.base64.Base64Dialect;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * 内嵌Base64数据的流式JSON请求体
+ * 由JSON信封的前半段、二进制数据的Base64编码和信封的后半段依次组成。
+ * Base64按块直接编码进输出缓冲区，完整的Base64字符串不会出现在堆上；
+ * 数据在池化缓冲区中且输出也是池化缓冲区时（reactor-netty），编码全程不经过Java堆
+ */
+public final class StreamingJsonBody {
+
+    /**
+     * 信封中Base64数据的占位符
+     */
+    public static final String PLACEHOLDER = "__STREAMING_BASE64__";
+
+    /**
+     * 每块编码的原始字节数，必须是3的倍数，保证中间块没有填充字符
+     */
+    private static final int CHUNK_BYTES = 48 * 1024;
+
+    private final byte[] prefix;
+
+    private final byte[] suffix;
+
+    private final ByteBuf data;
+
+    /**
+     * @param envelope 序列化后的JSON信封，其中字符串值的位置放置了{@link #PLACEHOLDER}
+     * @param data 需要Base64编码的二进制数据
+     */
+    public StreamingJsonBody(byte[] envelope, byte[] data) {
+        this(envelope, Unpooled.wrappedBuffer(data));
+    }
+
+    /**
+     * @param envelope 序列化后的JSON信封，其中字符串值的位置放置了{@link #PLACEHOLDER}
+     * @param data 需要Base64编码的二进制数据，不转移所有权，请求体可能因重试多次写出，
+     *             调用方在请求结束后才能release
+     */
+    public StreamingJsonBody(byte[] envelope, ByteBuf data) {
+        int index = indexOf(envelope, PLACEHOLDER.getBytes(StandardCharsets.US_ASCII));
+        if (index < 0) {
+            throw new IllegalArgumentException("JSON信封中没有Base64占位符");
+        }
+        this.prefix = Arrays.copyOfRange(envelope, 0, index);
+        this.suffix = Arrays.copyOfRange(envelope, index + PLACEHOLDER.length(), envelope.length);
+        this.data = data;
+    }
+
+    /**
+     * 请求体总长度
+     */
+    public long contentLength() {
+        return prefix.length + base64Length(data.readableBytes()) + suffix.length;
+    }
+
+    /**
+     * 按需逐块生成请求体，下游每请求一块才编码一块
+     * @param bufferFactory 输出缓冲区工厂
+     * @return 请求体数据块
+     */
+    public Flux<DataBuffer> write(DataBufferFactory bufferFactory) {
+        int chunks = (data.readableBytes() + CHUNK_BYTES - 1) / CHUNK_BYTES;
+        return Flux.concat(
+                Flux.defer(() -> Flux.just(bufferFactory.wrap(prefix))),
+                Flux.range(0, chunks).map(i -> encodeChunk(bufferFactory, i * CHUNK_BYTES)),
+                Flux.defer(() -> Flux.just(bufferFactory.wrap(suffix))));
+    }
+
+    /**
+     * 编码一块数据
+     * 编码期间持有一个引用：请求被取消、调用方已经release时抛出IllegalReferenceCountException，不会读到已回收的内存
+     */
+    private DataBuffer encodeChunk(DataBufferFactory bufferFactory, int offset) {
+        int length = Math.min(CHUNK_BYTES, data.readableBytes() - offset);
+        int index = data.readerIndex() + offset;
+        data.retain();
+        try {
+            if (bufferFactory instanceof NettyDataBufferFactory netty) {
+                return netty.wrap(io.netty.handler.codec.base64.Base64.encode(data, index, length, false,
+                        Base64Dialect.STANDARD, netty.getByteBufAllocator()));
+            }
+            DataBuffer buffer = bufferFactory.allocateBuffer(base64Length(length));
+            try (OutputStream output = Base64.getEncoder().wrap(buffer.asOutputStream())) {
+                data.getBytes(index, output, length);
+            } catch (IOException e) {
+                DataBufferUtils.release(buffer);
+                throw new UncheckedIOException(e);
+            }
+            return buffer;
+        } finally {
+            data.release();
+        }
+    }
+
+    private static int base64Length(int length) {
+        return (length + 2) / 3 * 4;
+    }
+
+    private static int indexOf(byte[] source, byte[] target) {
+        outer:
+        for (int i = 0; i <= source.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (source[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.imageai.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 长文本切分
+ * 将文本切分为不超过指定长度的若干段，便于分段调用TTS。
+ * 优先在句子边界切分，并把相邻的短句合并到同一段；单句超长时在逗号等停顿处切分，
+ * 仍然超长时才按长度硬切
+ */
+public final class TextChunker {
+
+    private TextChunker() {
+    }
+
+    /**
+     * 切分文本
+     * @param text 文本
+     * @param maxChars 每段的最大字符数
+     * @return 按原顺序排列的文本段，文本为空时返回空列表
+     */
+    public static List<String> chunk(String text, int maxChars) {
+        if (maxChars <= 1) {
+            throw new IllegalArgumentException("maxChars必须大于1: " + maxChars);
+        }
+        List<String> chunks = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return chunks;
+        }
+        StringBuilder current = new StringBuilder(Math.min(text.length(), maxChars));
+        for (String piece : pieces(text, maxChars)) {
+            if (current.length() + piece.length() > maxChars) {
+                addChunk(chunks, current);
+            }
+            current.append(piece);
+        }
+        addChunk(chunks, current);
+        return chunks;
+    }
+
+    /**
+     * 按句子切分，超长的句子再按停顿切分，每个片段都不超过maxChars
+     */
+    private static List<String> pieces(String text, int maxChars) {
+        List<String> pieces = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (SentenceSplitter.isSentenceEnd(text.charAt(i)) || i == text.length() - 1) {
+                addPiece(pieces, text, start, i + 1, maxChars);
+                start = i + 1;
+            }
+        }
+        return pieces;
+    }
+
+    private static void addPiece(List<String> pieces, String text, int start, int end, int maxChars) {
+        while (end - start > maxChars) {
+            int cut = lastBreak(text, start, start + maxChars);
+            pieces.add(text.substring(start, cut));
+            start = cut;
+        }
+        if (end > start) {
+            pieces.add(text.substring(start, end));
+        }
+    }
+
+    /**
+     * 在[start, limit)内找最后一个停顿处，找不到时在limit处硬切（不拆开代理对）
+     * @return 切分位置，即下一个片段的起点
+     */
+    private static int lastBreak(String text, int start, int limit) {
+        for (int i = limit - 1; i > start; i--) {
+            if (isPause(text.charAt(i))) {
+                return i + 1;
+            }
+        }
+        return Character.isLowSurrogate(text.charAt(limit)) ? limit - 1 : limit;
+    }
+
+    private static void addChunk(List<String> chunks, StringBuilder current) {
+        String chunk = current.toString().trim();
+        current.setLength(0);
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+    }
+
+    /**
+     * 是否为句内停顿
+     */
+    public static boolean isPause(char c) {
+        return switch (c) {
+            case '，', '、', '：', ',', ':', ' ', '　' -> true;
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.imageai.util;
+
+/**
+ * TTS文本规范化
+ * 单次遍历完成以下处理，代替逐个replace/replaceAll：
+ * <ul>
+ *     <li>去掉控制字符（\x00-\x08、\x0E-\x1F、\x7F）</li>
+ *     <li>换行、制表符等空白字符连续出现时合并为一个空格</li>
+ *     <li>去掉首尾空白</li>
+ * </ul>
+ * 文本已经规范时直接返回原字符串，不分配新对象
+ */
+public final class TextNormalizer {
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * 规范化文本
+     * @param text 原始文本
+     * @return 规范化后的文本，null原样返回
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return null;
+        }
+        int length = text.length();
+        int first = firstChange(text, length);
+        if (first == length) {
+            return text;
+        }
+        char[] out = new char[length];
+        text.getChars(0, first, out, 0);
+        int size = first;
+        // 空格暂不输出，遇到下一个可见字符时再补上，这样首尾和连续的空白都不会输出
+        boolean pendingSpace = false;
+        if (size > 0 && out[size - 1] == ' ') {
+            size--;
+            pendingSpace = true;
+        }
+        for (int i = first; i < length; i++) {
+            char c = text.charAt(i);
+            if (isWhitespace(c)) {
+                pendingSpace = size > 0;
+            } else if (!isControl(c)) {
+                if (pendingSpace) {
+                    out[size++] = ' ';
+                    pendingSpace = false;
+                }
+                out[size++] = c;
+            }
+        }
+        return new String(out, 0, size);
+    }
+
+    /**
+     * 找到第一个需要改动的位置，文本无需改动时返回length
+     * 单个空格在两个非空白字符之间时无需改动
+     */
+    private static int firstChange(String text, int length) {
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == ' ') {
+                if (i == 0 || i == length - 1 || isWhitespace(text.charAt(i + 1))) {
+                    return i;
+                }
+            } else if (isWhitespace(c) || isControl(c)) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 与正则\s一致：空格、\t、\n、\x0B、\f、\r
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    private static boolean isControl(char c) {
+        return c < '\t' || (c > '\r' && c < ' ') || c == 0x7F;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.imageai.job;
+
+import com.example.imageai.audio.VoiceSelector;
+import com.example.imageai.dto.ImageAnalysisBatchItem;
+import com.example.imageai.dto.JobSubmitRequest;
+import com.example.imageai.service.ImageAnalysisService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * job.timeout是整个任务的期限，而不是相邻两张图片结果之间的最长间隔
+ */
+class JobServiceTimeoutTest {
+
+    @TempDir
+    Path dir;
+
+    private JobService jobService;
+
+    @AfterEach
+    void tearDown() {
+        if (jobService != null) {
+            jobService.stop();
+        }
+    }
+
+    @Test
+    void jobFailsWhenTotalTimeExceedsTimeout() {
+        // 每200ms完成一张图片，间隔始终小于300ms的期限，但5张图片共需约1s
+        Job job = submit(Duration.ofMillis(300), Duration.ofMillis(200), 5);
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> job.getStatus().isFinished());
+        assertThat(job.getStatus()).isEqualTo(JobStatus.FAILED);
+        assertThat(job.getError()).contains("未完成");
+        assertThat(job.getResults()).hasSizeLessThan(5);
+    }
+
+    @Test
+    void jobSucceedsWithinTimeout() {
+        Job job = submit(Duration.ofSeconds(5), Duration.ofMillis(20), 5);
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> job.getStatus().isFinished());
+        assertThat(job.getStatus()).isEqualTo(JobStatus.SUCCEEDED);
+        assertThat(job.getResults()).hasSize(5);
+    }
+
+    private Job submit(Duration jobTimeout, Duration itemInterval, int images) {
+        ImageAnalysisService imageAnalysisService = mock(ImageAnalysisService.class);
+        when(imageAnalysisService.analyzeBatch(any(), any(), any(), any())).thenReturn(
+                Flux.interval(itemInterval)
+                        .take(images)
+                        .map(i -> ImageAnalysisBatchItem.builder().index(i).imageUrl("https://example.com/" + i).build()));
+        JobStore jobStore = new JobStore(new ObjectMapper().findAndRegisterModules(), dir.toString(), Duration.ofHours(1));
+        jobStore.load();
+        jobService = new JobService(imageAnalysisService, jobStore, mock(VoiceSelector.class), null,
+                100, 1, jobTimeout, List.of());
+        jobService.start();
+
+        JobSubmitRequest request = new JobSubmitRequest();
+        request.setImageUrls(List.of("https://example.com/a.jpg"));
+        return jobService.submit(request, "test").orElseThrow();
+    }
+}
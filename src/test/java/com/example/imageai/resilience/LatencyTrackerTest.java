@@ -0,0 +1,61 @@
+package com.example.imageai.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 刚达到最小样本数时分位数必须反映已有样本的分布，而不是第一个样本
+ */
+class LatencyTrackerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    @Test
+    void returnsMinusOneBelowMinSamples() {
+        LatencyTracker tracker = new LatencyTracker(512, 0.95, 20);
+        for (int i = 0; i < 19; i++) {
+            tracker.record(FAST);
+        }
+        assertThat(tracker.percentileNanos()).isEqualTo(-1);
+    }
+
+    @Test
+    void percentileFollowsSlowSamplesAfterFastWarmup() {
+        LatencyTracker tracker = new LatencyTracker(512, 0.95, 20);
+        for (int i = 0; i < 19; i++) {
+            tracker.record(FAST);
+        }
+        // 第20个到第31个样本都很慢：每次的p95都应与全部样本的真实分位数一致，不能停留在第一个快样本的延迟
+        List<Long> recorded = new ArrayList<>(Collections.nCopies(19, FAST));
+        for (int i = 0; i < 12; i++) {
+            tracker.record(SLOW);
+            recorded.add(SLOW);
+            assertThat(tracker.percentileNanos()).isEqualTo(p95(recorded));
+        }
+        assertThat(tracker.percentileNanos()).isEqualTo(SLOW);
+    }
+
+    @Test
+    void percentileFollowsFastSamplesAfterSlowFirstCall() {
+        LatencyTracker tracker = new LatencyTracker(512, 0.95, 20);
+        tracker.record(SLOW);
+        for (int i = 0; i < 29; i++) {
+            tracker.record(FAST);
+        }
+        assertThat(tracker.percentileNanos()).isEqualTo(FAST);
+    }
+
+    private static long p95(List<Long> recorded) {
+        List<Long> sorted = new ArrayList<>(recorded);
+        Collections.sort(sorted);
+        return sorted.get((int) Math.ceil(0.95 * sorted.size()) - 1);
+    }
+}
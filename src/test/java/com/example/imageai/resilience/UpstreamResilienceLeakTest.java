@@ -0,0 +1,119 @@
+package com.example.imageai.resilience;
+
+import com.example.imageai.limit.UpstreamLimiter;
+import com.example.imageai.service.Upstream;
+import com.example.imageai.util.PooledBuffers;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCounted;
+import io.netty.util.ResourceLeakDetector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * 对冲请求中落选一方的池化缓冲区必须被释放
+ * 原请求和对冲请求几乎同时返回时，落选一方的结果在firstWithValue中被直接丢弃，不经过discard钩子，
+ * 只能由容错层交给调用方提供的release释放
+ */
+class UpstreamResilienceLeakTest {
+
+    private ResourceLeakDetector.Level previousLevel;
+
+    private final List<ByteBuf> allocated = new CopyOnWriteArrayList<>();
+
+    private UpstreamResilience resilience;
+
+    @BeforeEach
+    void setUp() {
+        previousLevel = ResourceLeakDetector.getLevel();
+        // 每个缓冲区都被跟踪，测试中漏掉的release会以LEAK日志报告
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+        UpstreamLimiter limiter = new UpstreamLimiter(8, 0, 8, 0, 8, 0, 8, 2.0, 100, Duration.ofSeconds(5));
+        resilience = new UpstreamResilience(limiter, 0, Duration.ofMillis(10), true, 0.5,
+                Duration.ofMillis(20), 1, 50, 20, 0.5, Duration.ofSeconds(30), 3);
+        // 一次快速调用作为延迟样本，之后的调用超过对冲延迟（20ms）即发出对冲请求
+        resilience.execute(Upstream.IMAGE_DOWNLOAD, () -> Mono.just(0)).block(Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ResourceLeakDetector.setLevel(previousLevel);
+    }
+
+    @Test
+    void losingHedgeResultIsReleased() {
+        CountDownLatch hedgeEmitted = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        CountDownLatch hedgeDone = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<Mono<ByteBuf>> call = () -> {
+            if (calls.incrementAndGet() == 1) {
+                // 原请求：对冲请求拿到结果之后才返回，赢得竞争
+                return emitOnThread(() -> {
+                    awaitUninterruptibly(hedgeEmitted);
+                    return allocate();
+                }, null);
+            }
+            // 对冲请求：先拿到结果，但停在发往firstWithValue的途中，直到原请求胜出
+            return emitOnThread(this::allocate, hedgeDone)
+                    .doOnNext(buffer -> {
+                        hedgeEmitted.countDown();
+                        awaitUninterruptibly(resume);
+                    });
+        };
+
+        ByteBuf result = resilience.execute(Upstream.IMAGE_DOWNLOAD, call, ReferenceCounted::release)
+                // 与ImageDownloadService相同：取消之后才产生的结果由调用方释放
+                .doOnDiscard(ByteBuf.class, ReferenceCounted::release)
+                .block(Duration.ofSeconds(5));
+        resume.countDown();
+        result.release();
+
+        awaitUninterruptibly(hedgeDone);
+        assertThat(calls).hasValue(2);
+        await().atMost(5, TimeUnit.SECONDS)
+                .untilAsserted(() -> assertThat(allocated).hasSize(2).allMatch(buffer -> buffer.refCnt() == 0));
+    }
+
+    private ByteBuf allocate() {
+        ByteBuf buffer = PooledBuffers.ALLOCATOR.directBuffer(1024).writeZero(1024);
+        allocated.add(buffer);
+        return buffer;
+    }
+
+    /**
+     * 在独立线程上产生结果，不受订阅取消时调度器中断线程的影响
+     */
+    private static Mono<ByteBuf> emitOnThread(Supplier<ByteBuf> value, CountDownLatch done) {
+        return Mono.create(sink -> new Thread(() -> {
+            try {
+                sink.success(value.get());
+            } finally {
+                if (done != null) {
+                    done.countDown();
+                }
+            }
+        }).start());
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.imageai.util;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 相同键的并发请求只调用一次上游，结果共享，调用结束后键被移除
+ */
+class SingleFlightTest {
+
+    private static final int SUBSCRIBERS = 32;
+
+    private final SingleFlight<String, Object> singleFlight = new SingleFlight<>();
+
+    @Test
+    void concurrentRequestsShareOneCall() throws Exception {
+        CountingCall call = new CountingCall();
+
+        List<CompletableFuture<Object>> results = subscribeConcurrently(call);
+        Object value = new Object();
+        call.sink.tryEmitValue(value);
+
+        for (CompletableFuture<Object> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(value);
+        }
+        assertThat(call.invocations).hasValue(1);
+        assertThat(singleFlight.sharedCount()).isEqualTo(SUBSCRIBERS - 1);
+        assertThat(singleFlight.inFlightCount()).isZero();
+
+        // 调用结束后到达的请求发起新的调用
+        CountingCall next = new CountingCall();
+        next.sink.tryEmitValue("next");
+        assertThat(singleFlight.execute("key", next).block(Duration.ofSeconds(5))).isEqualTo("next");
+        assertThat(next.invocations).hasValue(1);
+    }
+
+    @Test
+    void errorIsSharedAndKeyRemoved() throws Exception {
+        CountingCall call = new CountingCall();
+
+        List<CompletableFuture<Object>> results = subscribeConcurrently(call);
+        RuntimeException error = new RuntimeException("上游失败");
+        call.sink.tryEmitError(error);
+
+        for (CompletableFuture<Object> result : results) {
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCause(error);
+        }
+        assertThat(call.invocations).hasValue(1);
+        assertThat(singleFlight.inFlightCount()).isZero();
+
+        // 失败的调用不会被后续请求复用
+        CountingCall retry = new CountingCall();
+        retry.sink.tryEmitValue("retry");
+        assertThat(singleFlight.execute("key", retry).block(Duration.ofSeconds(5))).isEqualTo("retry");
+        assertThat(retry.invocations).hasValue(1);
+    }
+
+    /**
+     * 从多个线程同时订阅，返回前等待所有订阅都已加入同一次调用
+     */
+    private List<CompletableFuture<Object>> subscribeConcurrently(CountingCall call) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(SUBSCRIBERS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            CountDownLatch subscribed = new CountDownLatch(SUBSCRIBERS);
+            List<CompletableFuture<Object>> results = new ArrayList<>();
+            for (int i = 0; i < SUBSCRIBERS; i++) {
+                CompletableFuture<Object> result = new CompletableFuture<>();
+                results.add(result);
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                        singleFlight.execute("key", call).subscribe(result::complete, result::completeExceptionally);
+                    } catch (InterruptedException e) {
+                        result.completeExceptionally(e);
+                    } finally {
+                        subscribed.countDown();
+                    }
+                });
+            }
+            start.countDown();
+            assertThat(subscribed.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(singleFlight.inFlightCount()).isEqualTo(1);
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 记录调用次数的上游，结果由测试通过sink给出
+     */
+    private static final class CountingCall implements Supplier<Mono<Object>> {
+
+        private final AtomicInteger invocations = new AtomicInteger();
+
+        private final Sinks.One<Object> sink = Sinks.one();
+
+        @Override
+        public Mono<Object> get() {
+            invocations.incrementAndGet();
+            return sink.asMono();
+        }
+    }
+}